@@ -3,7 +3,7 @@ import java.util.Random;
 import java.util.stream.IntStream;
 
 /**
- * Four array searching algorithms, from the simplest to the most efficient,
+ * Six array searching algorithms, from the simplest to the most efficient,
  * each illustrating a different optimization idea.
  * <p>
  * <ol>
@@ -17,6 +17,13 @@ import java.util.stream.IntStream;
  *       borrowed from high-performance computing (Duff's device, etc.).</li>
  *   <li><b>Binary search</b> — for <em>sorted</em> arrays only. Halves the
  *       search space each step, giving O(log n) performance.</li>
+ *   <li><b>Eytzinger search</b> — the same O(log n) search over the sorted
+ *       elements rearranged in the order of a breadth-first traversal of
+ *       the binary search tree, so that the first probes of every search
+ *       hit the same few cache lines, and with a loop free of branches.</li>
+ *   <li><b>Batched search</b> — many binary searches at once, advanced in
+ *       lock-step so that their cache misses overlap, or in ascending order
+ *       of the targets, each one starting where the previous one ended.</li>
  * </ol>
  * <p>
  * All methods are static (they don't need instance state) and the main method
@@ -154,11 +161,217 @@ public class ArraySearchDemo {
     }
 
     // -----------------------------------------------------------------------
-    // Benchmarking helper.
+    // 5. Eytzinger search — binary search in a cache-friendly layout.
+    //
+    // In a large sorted array, the first probes of binary search are far
+    // apart, and each one of them is a cache miss, even though every search
+    // makes the same first probes. The Eytzinger layout stores the implicit
+    // binary search tree in breadth-first order, the same way as a binary
+    // heap: the root at index 1, and the children of node k at 2k and 2k+1.
+    // The top levels of the tree are then packed together at the start of
+    // the array, where they stay in the cache. Deeper down, the sixteen
+    // descendants of node k four levels below it are the consecutive nodes
+    // 16k..16k+15, 64 bytes, so they can be fetched while the search is still
+    // four levels above them. Java has no prefetch instruction, but a plain
+    // load whose value nothing waits for does the same job: the out-of-order
+    // core starts the cache miss at once, in parallel with the loads that the
+    // descent has to wait for. Java does not align arrays to cache lines, so
+    // those 64 bytes may straddle two lines, and both of their ends are loaded.
+    //
+    // The descent itself needs no branches at all: node k is followed by
+    // node 2k + (layout[k] < target), which the JIT compiles to a conditional
+    // move instead of a jump that the CPU would mispredict half the time.
+    // The loop runs the same number of times for every target, and the
+    // answer is recovered from the bits of the final index afterwards.
+    // -----------------------------------------------------------------------
+
+    /**
+     * A sorted array rearranged in the Eytzinger layout for fast searching.
+     * The searches return the same index in the original sorted array as
+     * {@link #binarySearch(int[], int)} does.
+     */
+    public static final class EytzingerIndex {
+
+        private final int[] layout; // layout[1..n] in breadth-first order; the rest is unused
+        private final int n;
+        private final int lastLevelSize; // Nodes on the possibly partial last level of the tree.
+        private final int levels;
+
+        /**
+         * Build the Eytzinger layout of a sorted array.
+         *
+         * @param sorted the elements, sorted in ascending order
+         */
+        public EytzingerIndex(int[] sorted) {
+            n = sorted.length;
+            if (n > Integer.MAX_VALUE - 16) { // The layout needs n + 16 slots.
+                throw new IllegalArgumentException("Array too large for the Eytzinger layout");
+            }
+            levels = 32 - Integer.numberOfLeadingZeros(n);
+            lastLevelSize = n - ((1 << (levels - 1)) - 1);
+            layout = new int[n + 16]; // Room for the prefetches past the last node.
+            for (int k = 1; k <= n; k++) { layout[k] = sorted[sortedIndex(k)]; }
+        }
+
+        /**
+         * Return the position of node {@code k} in the sorted order. In a
+         * perfect tree, a node at depth d is followed in sorted order by its
+         * right subtree of 2^(levels-1-d) - 1 nodes, which gives its rank at
+         * once. The nodes missing from the last level of a complete tree would
+         * sit at the even ranks from twice the size of that level onward, so
+         * those that would come before node k are subtracted from its rank.
+         */
+        private int sortedIndex(int k) {
+            int depth = 31 - Integer.numberOfLeadingZeros(k);
+            long rank = ((2L * (k - (1 << depth)) + 1) << (levels - 1 - depth)) - 1;
+            return (int) (rank - Math.max(0, (rank + 1) / 2 - lastLevelSize));
+        }
+
+        /** Return the number of elements. */
+        public int size() {
+            return n;
+        }
+
+        /**
+         * Search for {@code target}, returning its index in the original sorted
+         * array if found, or otherwise its insertion point, the same way as
+         * {@link #binarySearch(int[], int)}.
+         *
+         * @param target the value to find
+         * @return the index of the target or its insertion point
+         */
+        public int search(int target) {
+            int k = 1, ahead = 0;
+            // While the nodes four levels down exist, touch their cache line
+            // first, and only then step down the tree without branches.
+            while (k <= n >>> 4) {
+                ahead ^= layout[k << 4] ^ layout[(k << 4) + 15];
+                k = 2 * k + (layout[k] < target ? 1 : 0);
+            }
+            // Once n is 2^30 or more, the last step can take k past 2^31,
+            // so from here on, k is compared as an unsigned number.
+            while (Integer.compareUnsigned(k, n) <= 0) {
+                k = 2 * k + (layout[k] < target ? 1 : 0);
+            }
+            // The search went right at the trailing one bits of k, and the
+            // answer is the node where it last went left, so strip those bits
+            // and that left turn. A k of zero means that it never went left.
+            k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+            int result = k == 0 ? n : sortedIndex(k);
+            // The result is never negative, so this changes nothing, but the
+            // JIT cannot know that, and has to keep the prefetching loads.
+            return result | (ahead & (result >> 31));
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // 6. Batched binary search — many searches in flight at once.
+    //
+    // A single binary search in a large array waits for one cache miss per
+    // step, because each probe depends on the result of the previous one.
+    // Searches for different targets do not depend on each other, though, so
+    // advancing a whole batch of them one step at a time in lock-step keeps
+    // that many cache misses in flight at once, and the memory system serves
+    // them in parallel. This is software pipelining: the latency of the
+    // memory is the same, but the searches overlap it with each other.
+    //
+    // For the batch to stay in lock-step, every search in it must take the
+    // same number of steps. The branchless form of binary search does: it
+    // keeps the start of the remaining range, and halves its length until
+    // one element remains, so the number of steps depends only on n.
+    //
+    // If the targets come in ascending order, each search can instead start
+    // from where the previous one ended, and find its range with exponential
+    // search: the cost then depends on the distance between the consecutive
+    // answers, not on the length of the whole array.
+    // -----------------------------------------------------------------------
+
+    /** How many searches of a batch advance in lock-step. */
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * Search for every target in a sorted array, storing into {@code out[i]}
+     * the same index or insertion point as {@link #binarySearch(int[], int)}
+     * returns for {@code targets[i]}.
+     *
+     * @param sorted  the array to search (must be sorted in ascending order)
+     * @param targets the values to find
+     * @param out     the array for the results, at least as long as {@code targets}
+     */
+    public static void binarySearch(int[] sorted, int[] targets, int[] out) {
+        if (out.length < targets.length) {
+            throw new IllegalArgumentException("Output array too short: " + out.length
+                    + " for " + targets.length + " targets");
+        }
+        if (sorted.length == 0) {
+            Arrays.fill(out, 0, targets.length, 0);
+            return;
+        }
+        int[] base = new int[BATCH_SIZE];
+        for (int first = 0; first < targets.length; first += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, targets.length - first);
+            Arrays.fill(base, 0);
+            // Every search of the batch takes one step down per round.
+            for (int length = sorted.length; length > 1; length -= length / 2) {
+                int half = length / 2;
+                for (int j = 0; j < count; j++) {
+                    base[j] = (sorted[base[j] + half] < targets[first + j]) ? base[j] + half : base[j];
+                }
+            }
+            for (int j = 0; j < count; j++) {
+                out[first + j] = base[j] + (sorted[base[j]] < targets[first + j] ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * The same as {@link #binarySearch(int[], int[], int[])}, but fast when
+     * the targets are in ascending order. Each search gallops forward from the
+     * answer of the previous one. Targets out of order are still found
+     * correctly, by starting that search over from the start of the array.
+     *
+     * @param sorted  the array to search (must be sorted in ascending order)
+     * @param targets the values to find, preferably in ascending order
+     * @param out     the array for the results, at least as long as {@code targets}
+     */
+    public static void binarySearchSortedTargets(int[] sorted, int[] targets, int[] out) {
+        if (out.length < targets.length) {
+            throw new IllegalArgumentException("Output array too short: " + out.length
+                    + " for " + targets.length + " targets");
+        }
+        int n = sorted.length;
+        int low = 0; // Every element before this is less than the current target.
+        for (int i = 0; i < targets.length; i++) {
+            int target = targets[i];
+            if (i > 0 && target < targets[i - 1]) { low = 0; } // Out of order, start over.
+
+            // Gallop forward in steps of 1, 2, 4, ... until an element that
+            // is at least the target, or the end of the array, is in range.
+            int step = 1;
+            while (step <= n - low && sorted[low + step - 1] < target) {
+                low += step;
+                step *= 2;
+            }
+            // Then binary search for the answer in the range that was found.
+            int high = Math.min(low + step - 1, n);
+            while (low < high) {
+                int mid = low + (high - low) / 2;
+                if (sorted[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            out[i] = low;
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Benchmarking helper, shared with VectorSearchDemo.
     // -----------------------------------------------------------------------
 
     @FunctionalInterface
-    private interface SearchMethod {
+    interface SearchMethod {
         int search(int[] array, int target);
     }
 
@@ -166,8 +379,8 @@ public class ArraySearchDemo {
      * Time a search method over many random lookups and return the average
      * nanoseconds per search.
      */
-    private static double benchmarkSearch(String name, SearchMethod method,
-                                          int[] array, int[] targets) {
+    static double benchmarkSearch(String name, SearchMethod method,
+                                  int[] array, int[] targets) {
         // Warmup run (JIT compilation).
         for (int target : targets) { method.search(array, target); }
 
@@ -182,8 +395,33 @@ public class ArraySearchDemo {
         return nanosPerSearch + dummy * 0.0; // Use dummy to prevent optimization.
     }
 
+    @FunctionalInterface
+    private interface BatchSearchMethod {
+        void search(int[] array, int[] targets, int[] out);
+    }
+
+    /**
+     * Time a batch search method over the same lookups as benchmarkSearch,
+     * and return the average nanoseconds per search.
+     */
+    private static double benchmarkBatch(String name, BatchSearchMethod method,
+                                         int[] array, int[] targets) {
+        int[] out = new int[targets.length];
+        // Warmup runs (JIT compilation), enough to get the method compiled.
+        for (int i = 0; i < 20; i++) { method.search(array, targets, out); }
+
+        // One batch is over quickly, so time several of them.
+        int rounds = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) { method.search(array, targets, out); }
+        long elapsed = System.nanoTime() - start;
+        double nanosPerSearch = (double) elapsed / ((long) rounds * targets.length);
+        System.out.printf("  %-18s %8.1f ns/search%n", name, nanosPerSearch);
+        return nanosPerSearch + out[0] * 0.0; // Use the results to prevent optimization.
+    }
+
     // -----------------------------------------------------------------------
-    // Main — verify correctness and benchmark all four algorithms.
+    // Main — verify correctness and benchmark all six algorithms.
     // -----------------------------------------------------------------------
 
     public static void main(String[] args) {
@@ -212,6 +450,10 @@ public class ArraySearchDemo {
             System.out.printf("  binarySearch(%d): index=%d (%s)%n",
                     target, result, found ? "found" : "insertion point");
         }
+        var sortedIndex = new EytzingerIndex(sortedArray);
+        for (int target : new int[]{23, 1, 50, 100}) {
+            System.out.printf("  eytzingerSearch(%d): index=%d%n", target, sortedIndex.search(target));
+        }
 
         // --- Benchmark ---
         System.out.println("\n=== Benchmark (unsorted, n=100,000) ===\n");
@@ -229,6 +471,44 @@ public class ArraySearchDemo {
         System.out.println();
         System.out.println("  (Binary search on sorted copy:)");
         benchmarkSearch("binarySearch",   ArraySearchDemo::binarySearch,   sortedLarge, targets);
+        var index = new EytzingerIndex(sortedLarge);
+        benchmarkSearch("eytzingerSearch", (array, target) -> index.search(target), sortedLarge, targets);
+
+        // --- Binary search against the Eytzinger layout as the arrays grow ---
+        System.out.println("\n=== Benchmark (sorted, n=1,000 to 100,000,000) ===");
+        int[] manyTargets = rng.ints(1_000_000).toArray();
+        for (int n = 1_000; n <= 100_000_000; n *= 10) {
+            int[] sorted = new int[n];
+            for (int i = 0; i < n; i++) { sorted[i] = rng.nextInt(); }
+            Arrays.sort(sorted);
+            var eytzinger = new EytzingerIndex(sorted);
+            System.out.printf("%nn = %,d:%n", n);
+            benchmarkSearch("binarySearch",    ArraySearchDemo::binarySearch, sorted, manyTargets);
+            benchmarkSearch("eytzingerSearch", (array, target) -> eytzinger.search(target), sorted, manyTargets);
+            boolean agree = IntStream.of(manyTargets).allMatch(t -> binarySearch(sorted, t) == eytzinger.search(t));
+            System.out.println("  Same results: " + agree);
+        }
+
+        // --- Many lookups at a time, for the same targets ---
+        System.out.printf("%n=== Batched search (%,d targets) ===%n", targets.length);
+        int[] sortedTargets = targets.clone();
+        Arrays.sort(sortedTargets);
+        int[] hugeArray = new int[50_000_000];
+        for (int i = 0; i < hugeArray.length; i++) { hugeArray[i] = rng.nextInt(size * 10); }
+        Arrays.sort(hugeArray);
+        for (int[] sorted : new int[][] {sortedLarge, hugeArray}) {
+            System.out.printf("%nn = %,d:%n", sorted.length);
+            benchmarkSearch("binarySearch",  ArraySearchDemo::binarySearch,              sorted, targets);
+            benchmarkBatch("batched",        ArraySearchDemo::binarySearch,              sorted, targets);
+            benchmarkBatch("sortedTargets",  ArraySearchDemo::binarySearchSortedTargets, sorted, sortedTargets);
+            int[] batched = new int[targets.length], ascending = new int[targets.length];
+            binarySearch(sorted, targets, batched);
+            binarySearchSortedTargets(sorted, sortedTargets, ascending);
+            boolean agree = IntStream.range(0, targets.length).allMatch(i ->
+                    batched[i] == binarySearch(sorted, targets[i])
+                    && ascending[i] == binarySearch(sorted, sortedTargets[i]));
+            System.out.println("  Same results as one at a time: " + agree);
+        }
 
         // --- Verify all linear searches agree ---
         System.out.println("\n=== Agreement Check ===\n");
@@ -1,8 +1,26 @@
-import java.util.BitSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
 
 /**
  * A <b>Bloom filter</b> — a probabilistic set that is extremely space-efficient
@@ -27,15 +45,38 @@ import java.util.function.ToIntFunction;
  * approximately {@code (1 - e^(-kn/m))^k}. The optimal number of hash functions
  * for a given {@code m/n} ratio is {@code k = (m/n) * ln(2) ≈ 0.693 * m/n}.
  *
+ * <h3>Two hashing modes</h3>
+ * <ul>
+ *   <li><b>Classic 32-bit mode</b> (the constructors): every element is first
+ *       reduced to an {@code int}, and the k hash functions have the form
+ *       {@code h_i(x) = (a_i * x + b_i) >>> 1 % m}. Simple and fast, but any two
+ *       elements whose 32-bit hashes collide (such as the strings "Aa" and "BB")
+ *       necessarily collide in <em>every</em> bucket, and the bucket index cannot
+ *       exceed {@code Integer.MAX_VALUE}.</li>
+ *   <li><b>Wide 64-bit mode</b> (the {@code withLongHash} factory methods): every
+ *       element is reduced to a {@code long}, which is scrambled into two 64-bit
+ *       values {@code h1} and {@code h2}, and the k buckets are computed with
+ *       <em>Kirsch–Mitzenmacher double hashing</em> {@code g_i(x) = (h1 + i * h2) mod m}.
+ *       Two hashes are provably enough to match the false positive rate of k
+ *       independent hash functions, and the bit count may now exceed
+ *       {@code Integer.MAX_VALUE} for those really large filters.</li>
+ * </ul>
+ *
  * <h3>Implementation notes</h3>
  * <ul>
- *   <li>Uses {@link BitSet} instead of {@code boolean[]} — 8× more space-efficient,
- *       since each boolean in an array occupies a full byte.</li>
- *   <li>Hash functions use the form {@code h_i(x) = (a_i * x + b_i) >>> 1 % m},
- *       with unsigned shift to avoid the {@code Math.abs(Integer.MIN_VALUE)} bug
- *       that plagues many Bloom filter implementations.</li>
- *   <li>Accepts a {@link ToIntFunction} instead of {@code Function<E, Integer>}
- *       to avoid autoboxing overhead on every hash computation.</li>
+ *   <li>The bits are packed 64 to a {@code long[]} word array, the same way that
+ *       {@link java.util.BitSet} does internally, instead of a {@code boolean[]}
+ *       that would spend a full byte per bit. Unlike {@code BitSet}, this array
+ *       is addressed with {@code long} bit indices.</li>
+ *   <li>Classic hash functions use unsigned shift to avoid the
+ *       {@code Math.abs(Integer.MIN_VALUE)} bug that plagues many Bloom filter
+ *       implementations. The wide mode uses {@link Long#remainderUnsigned} for
+ *       the same reason.</li>
+ *   <li>Accepts a {@link ToIntFunction} or {@link ToLongFunction} instead of
+ *       {@code Function<E, Integer>} to avoid autoboxing overhead on every
+ *       hash computation.</li>
+ *   <li>A filter can be saved into a file with {@link #save}, and reopened for
+ *       queries without loading it into the heap with {@link MappedBloomFilter}.</li>
  * </ul>
  *
  * @param <E> the element type
@@ -43,17 +84,154 @@ import java.util.function.ToIntFunction;
  */
 public class BloomFilter<E> {
 
-    private final BitSet bits;
-    private final int bitCount;             // m — number of bits
-    private final int[] hashMultipliers;    // a_i coefficients
-    private final int[] hashOffsets;        // b_i coefficients
-    private final ToIntFunction<E> toInt;   // element → int conversion
-    private int elementCount;               // n — elements added so far
+    /** Seed for the hash function family, fixed for reproducible behavior. */
+    static final long DEFAULT_SEED = 12345;
+
+    private final long[] words;             // the bit array, 64 bits per word
+    private final Hashing<E> hashing;       // the k hash functions into m bits
+    private long elementCount;              // n — elements added so far
+
+    // -----------------------------------------------------------------------
+    // The hash function family, shared with the other Bloom filter variants.
+    // -----------------------------------------------------------------------
+
+    /**
+     * The family of {@code k} hash functions that map elements to bucket
+     * indices {@code 0..m-1}, in either the classic or the wide mode. Callers
+     * compute the two element hashes once with {@link #hash1} and
+     * {@link #hash2}, and then loop through the k buckets:
+     * <pre>{@code
+     *     long h1 = hashing.hash1(element), h2 = hashing.hash2(h1);
+     *     for (int i = 0; i < hashing.k; i++) { use(hashing.bucket(h1, h2, i)); }
+     * }</pre>
+     * Two families built from the same k, m, seed and mode compute identical
+     * buckets, which is what makes filters persistable and mergeable.
+     */
+    static final class Hashing<E> {
+        final int k;                        // number of hash functions
+        final long m;                       // number of buckets
+        final long seed;                    // seed of the hash function family
+        final boolean wide;                 // true for 64-bit double hashing
+        private final int[] multipliers;    // a_i coefficients (classic mode)
+        private final int[] offsets;        // b_i coefficients (classic mode)
+        private final ToIntFunction<E> toInt;   // element → int conversion (classic mode)
+        private final ToLongFunction<E> toLong; // element → long conversion (wide mode)
+
+        Hashing(int k, long m, long seed, boolean wide,
+                ToIntFunction<E> toInt, ToLongFunction<E> toLong) {
+            if (k < 1) {
+                throw new IllegalArgumentException("Need at least one hash function, got: " + k);
+            }
+            if (m < 1 || (!wide && m > Integer.MAX_VALUE)) {
+                throw new IllegalArgumentException("Bit count out of range for this hashing mode: " + m);
+            }
+            this.k = k;
+            this.m = m;
+            this.seed = seed;
+            this.wide = wide;
+            this.toInt = toInt;
+            this.toLong = toLong;
+
+            // Initialize the classic hash function family h_i(x) = a_i * x + b_i.
+            // We use a seeded Random for reproducible behavior in tests.
+            var rng = new Random(seed);
+            multipliers = new int[k];
+            offsets = new int[k];
+            for (int i = 0; i < k; i++) {
+                // Odd multipliers guarantee they are coprime with any power-of-two
+                // table size, giving better bit dispersion.
+                multipliers[i] = rng.nextInt() | 1;
+                offsets[i] = rng.nextInt();
+            }
+        }
+
+        /**
+         * The first element hash: the plain int hash in the classic mode, or
+         * the scrambled 64-bit hash {@code h1} in the wide mode.
+         */
+        long hash1(E element) {
+            if (wide) {
+                return firstHash((toLong != null) ? toLong.applyAsLong(element) : element.hashCode());
+            }
+            return (toInt != null) ? toInt.applyAsInt(element) : element.hashCode();
+        }
+
+        /**
+         * The first hash of a primitive {@code int} key that serves as its own
+         * element hash, as if converted by {@code Integer::intValue} or
+         * {@code Integer::longValue}.
+         */
+        long hash1OfInt(int key) {
+            return wide ? firstHash(key) : key;
+        }
+
+        /**
+         * The first hash of a primitive {@code long} key, as if converted by
+         * {@code Long::longValue} in the wide mode. The classic mode folds the
+         * key into an int with {@code Long.hashCode}, exactly like the default
+         * {@code hashCode()} of a {@code Long} element.
+         */
+        long hash1OfLong(long key) {
+            return wide ? firstHash(key) : Long.hashCode(key);
+        }
+
+        /** The second element hash {@code h2}, used only in the wide mode. */
+        long hash2(long h1) {
+            return wide ? secondHash(h1) : 0;
+        }
+
+        /**
+         * Compute the bucket index of hash function {@code i}. In the classic mode,
+         * uses unsigned right shift ({@code >>>}) instead of {@code Math.abs()}
+         * to avoid the bug where {@code Math.abs(Integer.MIN_VALUE)} returns
+         * a negative number (Integer.MIN_VALUE itself). In the wide mode, computes
+         * {@code (h1 + i * h2) mod m} of the Kirsch–Mitzenmacher double hashing
+         * scheme, treating the sum as an unsigned 64-bit number.
+         */
+        long bucket(long h1, long h2, int i) {
+            if (wide) {
+                return Long.remainderUnsigned(h1 + i * h2, m);
+            }
+            return ((multipliers[i] * (int) h1 + offsets[i]) >>> 1) % m;
+        }
+
+        /** Scramble a raw 64-bit element hash into {@code h1}. */
+        long firstHash(long hash) {
+            return mix64(hash ^ seed);
+        }
+
+        /** The second hash {@code h2}, forced odd so that it never gets stuck at zero. */
+        static long secondHash(long h1) {
+            return mix64(h1 + 0x9e3779b97f4a7c15L) | 1;
+        }
+
+        /**
+         * The 64-bit finalizer of MurmurHash3. Every input bit affects every output
+         * bit, so even poorly distributed element hashes get scrambled well.
+         */
+        static long mix64(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return z ^ (z >>> 33);
+        }
+
+        /** Return whether the other family computes exactly the same buckets. */
+        boolean sameFunctionsAs(Hashing<?> other) {
+            return k == other.k && m == other.m && seed == other.seed && wide == other.wide;
+        }
+    }
 
     // -----------------------------------------------------------------------
     // Construction
     // -----------------------------------------------------------------------
 
+    /** The one constructor that all public constructors and factory methods end up calling. */
+    private BloomFilter(Hashing<E> hashing) {
+        this.hashing = hashing;
+        this.words = new long[Math.toIntExact((hashing.m + 63) >>> 6)];
+        this.elementCount = 0;
+    }
+
     /**
      * Create a Bloom filter with {@code k} hash functions and {@code m} bits.
      *
@@ -63,22 +241,7 @@ public class BloomFilter<E> {
      *                          if null, {@code Object.hashCode()} is used
      */
     public BloomFilter(int hashFunctionCount, int bitCount, ToIntFunction<E> toInt) {
-        this.bitCount = bitCount;
-        this.bits = new BitSet(bitCount);
-        this.toInt = toInt;
-        this.elementCount = 0;
-
-        // Initialize the hash function family h_i(x) = a_i * x + b_i.
-        // We use a seeded Random for reproducible behavior in tests.
-        var rng = new Random(12345);
-        hashMultipliers = new int[hashFunctionCount];
-        hashOffsets = new int[hashFunctionCount];
-        for (int i = 0; i < hashFunctionCount; i++) {
-            // Odd multipliers guarantee they are coprime with any power-of-two
-            // table size, giving better bit dispersion.
-            hashMultipliers[i] = rng.nextInt() | 1;
-            hashOffsets[i] = rng.nextInt();
-        }
+        this(new Hashing<>(hashFunctionCount, bitCount, DEFAULT_SEED, false, toInt, null));
     }
 
     /** Convenience constructor that uses {@code hashCode()} for hashing. */
@@ -96,9 +259,40 @@ public class BloomFilter<E> {
      * @param toInt             element-to-int conversion (null for hashCode)
      */
     public BloomFilter(int expectedElements, double falsePositiveRate, ToIntFunction<E> toInt) {
-        this(optimalK(expectedElements, optimalM(expectedElements, falsePositiveRate)),
+        this(new Hashing<>(optimalK(expectedElements, optimalM(expectedElements, falsePositiveRate)),
                 optimalM(expectedElements, falsePositiveRate),
-                toInt);
+                DEFAULT_SEED, false, toInt, null));
+    }
+
+    /**
+     * Create a Bloom filter in the wide 64-bit hashing mode with {@code k}
+     * hash functions and {@code m} bits, where {@code m} may exceed
+     * {@code Integer.MAX_VALUE}.
+     *
+     * @param hashFunctionCount the number of hash functions (k)
+     * @param bitCount          the number of bits in the filter (m)
+     * @param toLong            converts an element to a long for hashing;
+     *                          if null, {@code Object.hashCode()} is used
+     * @return the new, empty filter
+     */
+    public static <E> BloomFilter<E> withLongHash(int hashFunctionCount, long bitCount,
+                                                  ToLongFunction<E> toLong) {
+        return new BloomFilter<>(new Hashing<>(hashFunctionCount, bitCount, DEFAULT_SEED, true, null, toLong));
+    }
+
+    /**
+     * Create a Bloom filter in the wide 64-bit hashing mode, sized for an
+     * expected number of elements and a desired false positive probability.
+     *
+     * @param expectedElements  the expected number of elements to insert
+     * @param falsePositiveRate the desired false positive probability (e.g. 0.01)
+     * @param toLong            element-to-long conversion (null for hashCode)
+     * @return the new, empty filter
+     */
+    public static <E> BloomFilter<E> withLongHash(long expectedElements, double falsePositiveRate,
+                                                  ToLongFunction<E> toLong) {
+        long bitCount = optimalM(expectedElements, falsePositiveRate);
+        return withLongHash(optimalK(expectedElements, bitCount), bitCount, toLong);
     }
 
     // -----------------------------------------------------------------------
@@ -106,13 +300,13 @@ public class BloomFilter<E> {
     // -----------------------------------------------------------------------
 
     /** Optimal bit count: m = -n * ln(p) / (ln(2))² */
-    private static int optimalM(int expectedElements, double falsePositiveRate) {
+    static long optimalM(long expectedElements, double falsePositiveRate) {
         double m = -expectedElements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
-        return Math.max(64, (int) Math.ceil(m));
+        return Math.max(64, (long) Math.ceil(m));
     }
 
     /** Optimal hash function count: k = (m/n) * ln(2) */
-    private static int optimalK(int expectedElements, int bitCount) {
+    static int optimalK(long expectedElements, long bitCount) {
         double k = ((double) bitCount / expectedElements) * Math.log(2);
         return Math.max(1, (int) Math.round(k));
     }
@@ -121,19 +315,14 @@ public class BloomFilter<E> {
     // Core operations
     // -----------------------------------------------------------------------
 
-    /**
-     * Compute a non-negative hash bucket index for hash function {@code i}.
-     * Uses unsigned right shift ({@code >>>}) instead of {@code Math.abs()}
-     * to avoid the bug where {@code Math.abs(Integer.MIN_VALUE)} returns
-     * a negative number (Integer.MIN_VALUE itself).
-     */
-    private int hashBucket(int hash, int i) {
-        return ((hashMultipliers[i] * hash + hashOffsets[i]) >>> 1) % bitCount;
+    /** Set the bit at the given index to 1. */
+    private void setBit(long index) {
+        words[(int) (index >>> 6)] |= 1L << index; // shift count is taken mod 64
     }
 
-    /** Convert an element to its integer hash seed. */
-    private int elementHash(E element) {
-        return (toInt != null) ? toInt.applyAsInt(element) : element.hashCode();
+    /** Return whether the bit at the given index is 1. */
+    private boolean getBit(long index) {
+        return (words[(int) (index >>> 6)] & (1L << index)) != 0;
     }
 
     /**
@@ -143,9 +332,10 @@ public class BloomFilter<E> {
      * @param element the element to add
      */
     public void add(E element) {
-        int hash = elementHash(element);
-        for (int i = 0; i < hashMultipliers.length; i++) {
-            bits.set(hashBucket(hash, i));
+        long h1 = hashing.hash1(element);
+        long h2 = hashing.hash2(h1);
+        for (int i = 0; i < hashing.k; i++) {
+            setBit(hashing.bucket(h1, h2, i));
         }
         elementCount++;
     }
@@ -162,25 +352,428 @@ public class BloomFilter<E> {
      * @return whether the element is probably present
      */
     public boolean probablyContains(E element) {
-        int hash = elementHash(element);
-        for (int i = 0; i < hashMultipliers.length; i++) {
-            if (!bits.get(hashBucket(hash, i))) {
+        long h1 = hashing.hash1(element);
+        long h2 = hashing.hash2(h1);
+        for (int i = 0; i < hashing.k; i++) {
+            if (!getBit(hashing.bucket(h1, h2, i))) {
                 return false; // Definitely not present — guaranteed correct.
             }
         }
         return true; // Probably present — small chance of false positive.
     }
 
+    // -----------------------------------------------------------------------
+    // Batch operations that process many elements in two passes.
+    //
+    // Adding or querying one element at a time interleaves hashing with bit
+    // accesses, and in a filter larger than the CPU cache, almost every bit
+    // access is a cache miss that the query loop must wait for before it can
+    // decide whether to continue. The batch operations first hash a whole block
+    // of elements, and then access their bits in a tight second pass. The bit
+    // accesses of the second pass are mutually independent, so the processor
+    // can keep many cache misses in flight at the same time, instead of
+    // suffering them one at a time. The primitive array versions also avoid
+    // boxing each key into a wrapper object.
+    // -----------------------------------------------------------------------
+
+    /** How many elements are hashed in one block before their bits are accessed. */
+    private static final int BATCH_BLOCK = 256;
+
+    /** Pass one: compute the k bucket indices of each first hash into {@code buckets}. */
+    private void bucketsOf(long[] h1s, int count, long[] buckets) {
+        int k = hashing.k;
+        for (int j = 0; j < count; j++) {
+            long h1 = h1s[j];
+            long h2 = hashing.hash2(h1);
+            for (int i = 0; i < k; i++) {
+                buckets[j * k + i] = hashing.bucket(h1, h2, i);
+            }
+        }
+    }
+
+    /** Both passes of adding a block of elements, given their first hashes. */
+    private void addBlock(long[] h1s, int count, long[] buckets) {
+        bucketsOf(h1s, count, buckets);
+        for (int t = 0, end = count * hashing.k; t < end; t++) {
+            setBit(buckets[t]);
+        }
+        elementCount += count;
+    }
+
+    /**
+     * Both passes of querying a block of elements, given their first hashes.
+     * Most queried elements are absent and get rejected by one of their first
+     * few bits, so instead of computing all k buckets of every element up front,
+     * the second pass proceeds in rounds: round {@code i} checks bucket {@code i}
+     * of each element that is still a candidate, and compacts the survivors
+     * into the candidate list of the next round without branching.
+     */
+    private void queryBlock(long[] h1s, int count, long[] h2s, int[] candidates,
+                            boolean[] out, int outOffset) {
+        for (int j = 0; j < count; j++) {
+            h2s[j] = hashing.hash2(h1s[j]);
+            candidates[j] = j;
+        }
+        int alive = count;
+        for (int i = 0; i < hashing.k && alive > 0; i++) {
+            int survivors = 0;
+            for (int t = 0; t < alive; t++) {
+                int j = candidates[t];
+                candidates[survivors] = j;
+                survivors += getBit(hashing.bucket(h1s[j], h2s[j], i)) ? 1 : 0;
+            }
+            alive = survivors;
+        }
+        // The candidates that survived all k rounds are the positives.
+        for (int j = 0; j < count; j++) { out[outOffset + j] = false; }
+        for (int t = 0; t < alive; t++) { out[outOffset + candidates[t]] = true; }
+    }
+
+    /**
+     * Add all the given elements to the filter, with the same end result as
+     * calling {@link #add} for each one.
+     *
+     * @param elements the elements to add
+     */
+    public void addAll(E[] elements) {
+        long[] h1s = new long[BATCH_BLOCK];
+        long[] buckets = new long[BATCH_BLOCK * hashing.k];
+        for (int start = 0; start < elements.length; start += BATCH_BLOCK) {
+            int count = Math.min(BATCH_BLOCK, elements.length - start);
+            for (int j = 0; j < count; j++) { h1s[j] = hashing.hash1(elements[start + j]); }
+            addBlock(h1s, count, buckets);
+        }
+    }
+
+    /**
+     * Add all the given primitive keys to the filter. Each key serves as its
+     * own element hash, so this is equivalent to adding the boxed keys to a
+     * filter whose conversion function is {@code Integer::intValue} (classic
+     * mode) or {@code Integer::longValue} (wide mode).
+     *
+     * @param keys the keys to add
+     */
+    public void addAll(int[] keys) {
+        long[] h1s = new long[BATCH_BLOCK];
+        long[] buckets = new long[BATCH_BLOCK * hashing.k];
+        for (int start = 0; start < keys.length; start += BATCH_BLOCK) {
+            int count = Math.min(BATCH_BLOCK, keys.length - start);
+            for (int j = 0; j < count; j++) { h1s[j] = hashing.hash1OfInt(keys[start + j]); }
+            addBlock(h1s, count, buckets);
+        }
+    }
+
+    /**
+     * Add all the given primitive keys to the filter. Each key serves as its
+     * own element hash, so in the wide mode this is equivalent to adding the
+     * boxed keys to a filter whose conversion function is {@code Long::longValue}.
+     * In the classic mode, the keys are folded with {@code Long.hashCode}.
+     *
+     * @param keys the keys to add
+     */
+    public void addAll(long[] keys) {
+        long[] h1s = new long[BATCH_BLOCK];
+        long[] buckets = new long[BATCH_BLOCK * hashing.k];
+        for (int start = 0; start < keys.length; start += BATCH_BLOCK) {
+            int count = Math.min(BATCH_BLOCK, keys.length - start);
+            for (int j = 0; j < count; j++) { h1s[j] = hashing.hash1OfLong(keys[start + j]); }
+            addBlock(h1s, count, buckets);
+        }
+    }
+
+    /**
+     * Query all the given elements, with the same answers that calling
+     * {@link #probablyContains} for each one would give.
+     *
+     * @param elements the elements to look up
+     * @param out      receives the answer for {@code elements[j]} in {@code out[j]}
+     */
+    public void probablyContainsAll(E[] elements, boolean[] out) {
+        long[] h1s = new long[BATCH_BLOCK];
+        long[] h2s = new long[BATCH_BLOCK];
+        int[] candidates = new int[BATCH_BLOCK];
+        for (int start = 0; start < elements.length; start += BATCH_BLOCK) {
+            int count = Math.min(BATCH_BLOCK, elements.length - start);
+            for (int j = 0; j < count; j++) { h1s[j] = hashing.hash1(elements[start + j]); }
+            queryBlock(h1s, count, h2s, candidates, out, start);
+        }
+    }
+
+    /**
+     * Query all the given primitive keys, hashed the same way as in {@link #addAll(int[])}.
+     *
+     * @param keys the keys to look up
+     * @param out  receives the answer for {@code keys[j]} in {@code out[j]}
+     */
+    public void probablyContainsAll(int[] keys, boolean[] out) {
+        long[] h1s = new long[BATCH_BLOCK];
+        long[] h2s = new long[BATCH_BLOCK];
+        int[] candidates = new int[BATCH_BLOCK];
+        for (int start = 0; start < keys.length; start += BATCH_BLOCK) {
+            int count = Math.min(BATCH_BLOCK, keys.length - start);
+            for (int j = 0; j < count; j++) { h1s[j] = hashing.hash1OfInt(keys[start + j]); }
+            queryBlock(h1s, count, h2s, candidates, out, start);
+        }
+    }
+
+    /**
+     * Query all the given primitive keys, hashed the same way as in {@link #addAll(long[])}.
+     *
+     * @param keys the keys to look up
+     * @param out  receives the answer for {@code keys[j]} in {@code out[j]}
+     */
+    public void probablyContainsAll(long[] keys, boolean[] out) {
+        long[] h1s = new long[BATCH_BLOCK];
+        long[] h2s = new long[BATCH_BLOCK];
+        int[] candidates = new int[BATCH_BLOCK];
+        for (int start = 0; start < keys.length; start += BATCH_BLOCK) {
+            int count = Math.min(BATCH_BLOCK, keys.length - start);
+            for (int j = 0; j < count; j++) { h1s[j] = hashing.hash1OfLong(keys[start + j]); }
+            queryBlock(h1s, count, h2s, candidates, out, start);
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Persistence in a simple binary file format.
+    // -----------------------------------------------------------------------
+
+    /** Magic number that starts every Bloom filter file, the ASCII string "BLMF". */
+    static final int FILE_MAGIC = 0x424C4D46;
+    /** Version number of the file format, for future changes. */
+    static final int FILE_VERSION = 1;
+    /** Length of the file header in bytes. The bit array starts right after it. */
+    static final int HEADER_BYTES = 40;
+
+    /**
+     * Write this filter to the given stream in the following big-endian binary
+     * format, as produced by {@link DataOutputStream}:
+     * <pre>
+     *   offset  size  content
+     *        0     4  magic number 0x424C4D46 ("BLMF")
+     *        4     4  format version, currently 1
+     *        8     4  flags: bit 0 is set for the wide 64-bit hashing mode
+     *       12     4  k, the number of hash functions
+     *       16     8  m, the number of bits
+     *       24     8  seed of the hash function family
+     *       32     8  n, the number of elements added
+     *       40  8*w   the w = ceil(m/64) words of the bit array, where bit
+     *                 i of the filter is bit (i mod 64) of word (i / 64)
+     * </pre>
+     * Every word starts at an offset divisible by 8, so that the file can be
+     * memory-mapped and read directly as a {@code LongBuffer}. The element
+     * conversion functions are code, not data, so they are not stored.
+     *
+     * @param out the stream to write into; not closed by this method
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        var data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(FILE_MAGIC);
+        data.writeInt(FILE_VERSION);
+        data.writeInt(hashing.wide ? 1 : 0);
+        data.writeInt(hashing.k);
+        data.writeLong(hashing.m);
+        data.writeLong(hashing.seed);
+        data.writeLong(elementCount);
+        for (long word : words) { data.writeLong(word); }
+        data.flush();
+    }
+
+    /**
+     * Save this filter into the given file in the format of {@link #writeTo},
+     * so that it can later be reopened instantly with {@link MappedBloomFilter}.
+     * The filter is first written into a temporary file in the same directory,
+     * which then atomically replaces the old file. Another process that has the
+     * old file mapped keeps seeing the old filter intact, instead of a file
+     * that is being rewritten under it. The new file gets the permissions of
+     * the old one, or the default permissions of new files if there was none,
+     * so that a filter saved for sharing stays readable by the others.
+     *
+     * @param file the file to create or overwrite
+     * @throws IOException if writing fails
+     */
+    public void save(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = createSibling(target);
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                writeTo(out);
+            }
+            copyPermissions(target, temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Create a new empty file with a random name next to the given one. Unlike
+     * {@link Files#createTempFile}, which makes the file readable by its owner
+     * only, this gives the file the default permissions of new files.
+     */
+    private static Path createSibling(Path target) throws IOException {
+        var rng = ThreadLocalRandom.current();
+        while (true) {
+            String name = target.getFileName() + "." + Long.toHexString(rng.nextLong()) + ".tmp";
+            Path temp = target.resolveSibling(name);
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // Very unlikely, so just try another name.
+            }
+        }
+    }
+
+    /** Give the file {@code to} the POSIX permissions of the file {@code from}, if it exists. */
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        var view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (view != null && Files.exists(from)) {
+            Files.setPosixFilePermissions(to, view.readAttributes().permissions());
+        }
+    }
+
+    /** The fields of a file header, after the magic number and version have been checked. */
+    private record Header(boolean wide, int k, long m, long seed, long n) {}
+
+    /** Read and validate the header of the format of {@link #writeTo}. */
+    private static Header readHeader(DataInputStream data) throws IOException {
+        if (data.readInt() != FILE_MAGIC) {
+            throw new IOException("Not a serialized Bloom filter");
+        }
+        int version = data.readInt();
+        if (version != FILE_VERSION) {
+            throw new IOException("Unsupported Bloom filter format version " + version);
+        }
+        boolean wide = (data.readInt() & 1) != 0;
+        return new Header(wide, data.readInt(), data.readLong(), data.readLong(), data.readLong());
+    }
+
+    /** Read a whole filter in the format of {@link #writeTo}, with the given element hashing. */
+    private static <E> BloomFilter<E> readFrom(InputStream in, boolean wide,
+                                               ToIntFunction<E> toInt, ToLongFunction<E> toLong) throws IOException {
+        var data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        Header header = readHeader(data);
+        if (header.wide() != wide) {
+            throw new IllegalArgumentException("Filter was serialized in the "
+                    + (header.wide() ? "wide 64-bit" : "classic 32-bit") + " hashing mode");
+        }
+        var filter = new BloomFilter<>(new Hashing<>(header.k(), header.m(), header.seed(), wide, toInt, toLong));
+        for (int w = 0; w < filter.words.length; w++) { filter.words[w] = data.readLong(); }
+        filter.elementCount = header.n();
+        return filter;
+    }
+
+    /**
+     * Read a filter in the classic 32-bit hashing mode that was written by {@link #writeTo}.
+     *
+     * @param in    the stream to read from; not closed by this method
+     * @param toInt the same element-to-int conversion that built the filter (null for hashCode)
+     * @return the filter
+     * @throws IOException if reading fails or the data is not a serialized filter
+     */
+    public static <E> BloomFilter<E> readFrom(InputStream in, ToIntFunction<E> toInt) throws IOException {
+        return readFrom(in, false, toInt, null);
+    }
+
+    /**
+     * Read a filter in the wide 64-bit hashing mode that was written by {@link #writeTo}.
+     *
+     * @param in     the stream to read from; not closed by this method
+     * @param toLong the same element-to-long conversion that built the filter (null for hashCode)
+     * @return the filter
+     * @throws IOException if reading fails or the data is not a serialized filter
+     */
+    public static <E> BloomFilter<E> readWideFrom(InputStream in, ToLongFunction<E> toLong) throws IOException {
+        return readFrom(in, true, null, toLong);
+    }
+
+    // -----------------------------------------------------------------------
+    // Set algebra between compatible filters.
+    //
+    // Two filters with the same k, m, hash seed and hashing mode set exactly
+    // the same bits for each element, so the bits of their union are simply the
+    // bitwise OR of their bit arrays, computed one 64-bit word at a time. This
+    // allows a large filter to be built in parallel shards whose elements are
+    // distributed over many threads or processes, and then merged in O(m/64)
+    // time. The bitwise AND similarly gives a filter for the intersection.
+    // The element conversion functions are code that cannot be compared, so
+    // the caller is responsible for using the same ones in all the shards.
+    // -----------------------------------------------------------------------
+
+    /** Ensure that the other filter uses exactly the same hash functions as this one. */
+    private void checkCompatible(Hashing<?> other) {
+        if (!hashing.sameFunctionsAs(other)) {
+            throw new IllegalArgumentException("Incompatible Bloom filters: k=%d, m=%d, seed=%d, wide=%b versus k=%d, m=%d, seed=%d, wide=%b"
+                    .formatted(hashing.k, hashing.m, hashing.seed, hashing.wide,
+                            other.k, other.m, other.seed, other.wide));
+        }
+    }
+
+    /**
+     * Turn this filter into the union of itself and the other filter, so that
+     * it reports every element that was added to either one. The element count
+     * becomes the sum of the two counts, an upper bound for elements added to both.
+     *
+     * @param other a filter with the same k, m, seed and hashing mode
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public void union(BloomFilter<E> other) {
+        checkCompatible(other.hashing);
+        for (int w = 0; w < words.length; w++) { words[w] |= other.words[w]; }
+        elementCount += other.elementCount;
+    }
+
+    /**
+     * Turn this filter into the intersection of itself and the other filter,
+     * so that it reports every element that was added to both. The result can
+     * have a higher false positive rate than a filter built directly from the
+     * common elements, since a bit may be set in both filters by different
+     * elements. The element count becomes the smaller of the two counts.
+     *
+     * @param other a filter with the same k, m, seed and hashing mode
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public void intersect(BloomFilter<E> other) {
+        checkCompatible(other.hashing);
+        for (int w = 0; w < words.length; w++) { words[w] &= other.words[w]; }
+        elementCount = Math.min(elementCount, other.elementCount);
+    }
+
+    /**
+     * Merge a serialized filter straight from a stream into this filter, with
+     * the same result as {@link #union} with the filter that {@link #writeTo}
+     * wrote into that stream, but without ever building that other filter.
+     *
+     * @param in the stream to read from; not closed by this method
+     * @throws IOException if reading fails or the data is not a serialized filter
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public void unionFrom(InputStream in) throws IOException {
+        var data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        Header header = readHeader(data);
+        checkCompatible(new Hashing<>(header.k(), header.m(), header.seed(), header.wide(), null, null));
+        for (int w = 0; w < words.length; w++) { words[w] |= data.readLong(); }
+        elementCount += header.n();
+    }
+
     // -----------------------------------------------------------------------
     // Diagnostics
     // -----------------------------------------------------------------------
 
     /** Return the number of elements that have been added. */
-    public int size() { return elementCount; }
+    public long size() { return elementCount; }
+
+    /** Return the number of bits in the filter. */
+    public long bitCount() { return hashing.m; }
+
+    /** Return whether this filter uses the wide 64-bit double hashing mode. */
+    public boolean isWide() { return hashing.wide; }
 
     /** Return the fraction of bits that are currently set to 1. */
     public double fillRatio() {
-        return (double) bits.cardinality() / bitCount;
+        long setBits = 0;
+        for (long word : words) { setBits += Long.bitCount(word); }
+        return (double) setBits / hashing.m;
     }
 
     /**
@@ -188,15 +781,19 @@ public class BloomFilter<E> {
      * number of inserted elements: {@code (1 - e^(-kn/m))^k}.
      */
     public double theoreticalFalsePositiveRate() {
-        int k = hashMultipliers.length;
-        double exponent = -(double) k * elementCount / bitCount;
+        return theoreticalFalsePositiveRate(hashing.k, hashing.m, elementCount);
+    }
+
+    /** The formula {@code (1 - e^(-kn/m))^k} for the given k, m and n. */
+    static double theoreticalFalsePositiveRate(int k, long m, long n) {
+        double exponent = -(double) k * n / m;
         return Math.pow(1 - Math.exp(exponent), k);
     }
 
     @Override
     public String toString() {
-        return "BloomFilter[k=%d, m=%,d bits (%,d KB), n=%,d, fill=%.1f%%, theoretical FP=%.6f]"
-                .formatted(hashMultipliers.length, bitCount, bitCount / 8 / 1024,
+        return "BloomFilter[%s, k=%d, m=%,d bits (%,d KB), n=%,d, fill=%.1f%%, theoretical FP=%.6f]"
+                .formatted(hashing.wide ? "64-bit" : "32-bit", hashing.k, hashing.m, hashing.m / 8 / 1024,
                         elementCount, fillRatio() * 100, theoreticalFalsePositiveRate());
     }
 
@@ -217,6 +814,19 @@ public class BloomFilter<E> {
         return word;
     }
 
+    /**
+     * A 64-bit polynomial string hash, the same idea as {@code String.hashCode()}
+     * but computed with a large odd multiplier in {@code long} arithmetic, so
+     * that strings colliding in 32 bits are spread apart.
+     */
+    private static long stringHash64(String s) {
+        long h = 1125899906842597L; // a large prime
+        for (int i = 0; i < s.length(); i++) {
+            h = 0x100000001b3L * h + s.charAt(i);
+        }
+        return h;
+    }
+
     // -----------------------------------------------------------------------
     // Main — demonstrate, verify, and measure the Bloom filter.
     // -----------------------------------------------------------------------
@@ -243,6 +853,28 @@ public class BloomFilter<E> {
         var autoFilter01 = new BloomFilter<String>(insertCount, 0.001, null);
         runExperiment(autoFilter01, insertCount, probeCount, new Random(42));
 
+        // --- Wide 64-bit double hashing mode, also for 1% ---
+        System.out.println("\n--- Wide 64-bit double hashing, auto-configured for 1% ---\n");
+        var wideFilter = BloomFilter.<String>withLongHash(insertCount, 0.01, BloomFilter::stringHash64);
+        runExperiment(wideFilter, insertCount, probeCount, new Random(42));
+
+        // --- Strings whose 32-bit hashCode values collide ---
+        System.out.println("\n--- \"Aa\" and \"BB\" have the same hashCode() ---\n");
+        var classic = new BloomFilter<String>(insertCount, 0.01, null);
+        var wide = BloomFilter.<String>withLongHash(insertCount, 0.01, BloomFilter::stringHash64);
+        classic.add("Aa");
+        wide.add("Aa");
+        System.out.println("  32-bit filter containing only \"Aa\" claims \"BB\": " + classic.probablyContains("BB"));
+        System.out.println("  64-bit filter containing only \"Aa\" claims \"BB\": " + wide.probablyContains("BB"));
+
+        // --- Batch operations versus one element at a time ---
+        System.out.println("\n--- Batch operations on 10,000,000 long keys ---\n");
+        benchmarkBatches(10_000_000);
+
+        // --- Building a filter in parallel shards ---
+        System.out.println("\n--- Building 1,000,000 keys in 8 shards and merging ---\n");
+        mergeShards(1_000_000, 8);
+
         // --- Space comparison ---
         System.out.println("\n--- Space comparison ---\n");
         System.out.printf("  Bloom filter (128 KB config): %,d bytes%n", 128 * 1024);
@@ -254,6 +886,97 @@ public class BloomFilter<E> {
                 (insertCount * 80) / (128 * 1024) + "× less memory.");
     }
 
+    /**
+     * Time adding and querying the given number of random long keys one at a
+     * time and in batches, in a filter that is far larger than the CPU cache.
+     * Each measurement is the best of five rounds, to let the JIT warm up.
+     */
+    private static void benchmarkBatches(int keyCount) {
+        var rng = new Random(42);
+        long[] keys = rng.longs(keyCount).toArray();
+        long[] probes = rng.longs(keyCount).toArray();
+        boolean[] answers = new boolean[keyCount];
+        double singleAdd = Double.MAX_VALUE, batchAdd = Double.MAX_VALUE;
+        double singleQuery = Double.MAX_VALUE, batchQuery = Double.MAX_VALUE;
+        int singleHits = 0, batchHits = 0;
+
+        for (int round = 0; round < 5; round++) {
+            var single = BloomFilter.<Long>withLongHash(keyCount, 0.01, Long::longValue);
+            var batch = BloomFilter.<Long>withLongHash(keyCount, 0.01, Long::longValue);
+
+            long start = System.nanoTime();
+            for (long key : keys) { single.add(key); }
+            singleAdd = Math.min(singleAdd, (double) (System.nanoTime() - start) / keyCount);
+
+            start = System.nanoTime();
+            batch.addAll(keys);
+            batchAdd = Math.min(batchAdd, (double) (System.nanoTime() - start) / keyCount);
+
+            start = System.nanoTime();
+            singleHits = 0;
+            for (long probe : probes) { if (single.probablyContains(probe)) { singleHits++; } }
+            singleQuery = Math.min(singleQuery, (double) (System.nanoTime() - start) / keyCount);
+
+            start = System.nanoTime();
+            batch.probablyContainsAll(probes, answers);
+            batchQuery = Math.min(batchQuery, (double) (System.nanoTime() - start) / keyCount);
+            batchHits = 0;
+            for (boolean answer : answers) { if (answer) { batchHits++; } }
+        }
+        System.out.printf("  one at a time: %6.1f ns/add %6.1f ns/query (%,d positives)%n",
+                singleAdd, singleQuery, singleHits);
+        System.out.printf("  in batches:    %6.1f ns/add %6.1f ns/query (%,d positives)%n",
+                batchAdd, batchQuery, batchHits);
+    }
+
+    /**
+     * Split the keys into shards that are filtered in parallel, serialize each
+     * shard filter into bytes as if shipping it from another process, and merge
+     * them all into one filter that should equal the sequentially built one.
+     */
+    private static void mergeShards(int keyCount, int shardCount) {
+        long[] keys = new Random(42).longs(keyCount).toArray();
+        var sequential = BloomFilter.<Long>withLongHash(keyCount, 0.01, Long::longValue);
+        sequential.addAll(keys);
+
+        byte[][] shipped = new byte[shardCount][];
+        IntStream.range(0, shardCount).parallel().forEach(shard -> {
+            var partial = BloomFilter.<Long>withLongHash(keyCount, 0.01, Long::longValue);
+            for (int i = shard; i < keyCount; i += shardCount) { partial.add(keys[i]); }
+            var bytes = new ByteArrayOutputStream();
+            try {
+                partial.writeTo(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // cannot happen for a byte array
+            }
+            shipped[shard] = bytes.toByteArray();
+        });
+        System.out.printf("  Each shard serialized into %,d bytes%n", shipped[0].length);
+
+        try {
+            long start = System.nanoTime();
+            var merged = BloomFilter.<Long>readWideFrom(new ByteArrayInputStream(shipped[0]), Long::longValue);
+            for (int shard = 1; shard < shardCount; shard++) {
+                merged.unionFrom(new ByteArrayInputStream(shipped[shard]));
+            }
+            System.out.printf("  Merged in %.1f ms: %s%n", (System.nanoTime() - start) / 1e6, merged);
+            System.out.println("  Merged bits identical to sequential build: "
+                    + Arrays.equals(merged.words, sequential.words));
+
+            // The intersection of two shards should contain neither shard's keys,
+            // apart from false positives.
+            var first = BloomFilter.<Long>readWideFrom(new ByteArrayInputStream(shipped[0]), Long::longValue);
+            var second = BloomFilter.<Long>readWideFrom(new ByteArrayInputStream(shipped[1]), Long::longValue);
+            first.intersect(second);
+            int claimed = 0;
+            for (int i = 0; i < keyCount; i += shardCount) { if (first.probablyContains(keys[i])) { claimed++; } }
+            System.out.printf("  Intersection of two disjoint shards claims %,d of %,d keys of the first%n",
+                    claimed, keyCount / shardCount);
+        } catch (IOException e) {
+            System.out.println("  ERROR: " + e.getMessage());
+        }
+    }
+
     /**
      * Run a complete insert → verify → probe experiment on the given filter.
      */
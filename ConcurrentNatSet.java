@@ -0,0 +1,221 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe version of {@link NatSet}, the monotonic set of natural numbers
+ * that are encountered in roughly ascending order, for use from many producer
+ * threads at the same time without any locks.
+ * <p>
+ * Simply making every method of {@code NatSet} {@code synchronized} would work,
+ * but all threads would then wait in line for one lock. Instead, this class
+ * splits the window into fixed-size <em>pages</em> of bits, each page stored in
+ * an {@link AtomicLongArray} of 64-bit words, and kept in a
+ * {@link ConcurrentHashMap} under its page number. Then:
+ * <ul>
+ *   <li>{@code add} sets its bit with an atomic read-modify-write on one word,
+ *       so threads only ever contend when they set bits in the very same word.
+ *       A new page is published into the map with {@code putIfAbsent}, so that
+ *       two threads that race to create it agree on the winner.</li>
+ *   <li>{@code contains} never writes anything, and never waits for anything.
+ *       {@code ConcurrentHashMap.get} is lock-free, and so is reading a word.</li>
+ *   <li>Compaction happens one page at a time. Each page counts its set bits,
+ *       and whichever thread fills the page at {@code start} moves {@code start}
+ *       past that page with a compare-and-set, and then discards the page. No
+ *       other thread ever needs to stop while this happens.</li>
+ * </ul>
+ * The order of those last two steps matters: {@code start} is always advanced
+ * <em>before</em> the page is removed, so a thread that fails to find a page
+ * can check {@code start} again to tell a discarded full page from a page that
+ * was never created.
+ *
+ * @author Ilkka Kokkarinen
+ */
+public class ConcurrentNatSet {
+
+    /** Each page holds 2^16 bits in 1024 words, that is, 8 kilobytes. */
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+
+    /** One page of the window: its bits, and how many of them are set. */
+    private static final class Page {
+        final AtomicLongArray words = new AtomicLongArray(PAGE_BITS / 64);
+        final AtomicInteger setCount = new AtomicInteger();
+    }
+
+    /** The set implicitly contains all natural numbers less than {@code start}. */
+    private final AtomicLong start = new AtomicLong(0);
+
+    /** The pages at or after {@code start} that contain at least one element. */
+    private final ConcurrentHashMap<Long, Page> pages = new ConcurrentHashMap<>();
+
+    // --- Statistics ---
+
+    private final AtomicLong shiftCount = new AtomicLong();
+
+    /** Return how many pages have been compacted away so far. */
+    public long getShiftCount() { return shiftCount.get(); }
+
+    /**
+     * Every natural number strictly less than this value is a member. In the
+     * presence of concurrent additions, the true value may already be larger.
+     */
+    public long allTrueUpTo() {
+        while (true) {
+            long s = start.get();
+            Page page = pages.get(s >>> PAGE_SHIFT);
+            if (page == null) {
+                if (start.get() == s) { return s; }
+                continue; // start moved on while we looked, so look again
+            }
+            int w = 0;
+            while (w < PAGE_BITS / 64 && page.words.get(w) == -1L) { w++; }
+            if (w == PAGE_BITS / 64) { return s + PAGE_BITS; }
+            return s + 64L * w + Long.numberOfTrailingZeros(~page.words.get(w));
+        }
+    }
+
+    /**
+     * Add the natural number {@code n} to the set. Safe to call from any
+     * number of threads at the same time.
+     *
+     * @param n the natural number to add
+     */
+    public void add(long n) {
+        if (n < start.get()) { return; } // already implicitly a member
+
+        long pageNumber = n >>> PAGE_SHIFT;
+        Page page = pages.get(pageNumber);
+        if (page == null) {
+            var created = new Page();
+            page = pages.putIfAbsent(pageNumber, created);
+            if (page == null) {
+                page = created;
+                // If the page was compacted away while we were creating it,
+                // the new page would never be discarded, so undo that.
+                if (n < start.get()) {
+                    pages.remove(pageNumber, created);
+                    return;
+                }
+            }
+        }
+
+        // Atomically OR the bit into its word, and find out if it was already set.
+        long mask = 1L << n; // shift count is taken mod 64
+        long old = page.words.getAndAccumulate((int) (n & (PAGE_BITS - 1)) >>> 6, mask, (a, b) -> a | b);
+        if ((old & mask) == 0 && page.setCount.incrementAndGet() == PAGE_BITS) {
+            compact();
+        }
+    }
+
+    /**
+     * Advance {@code start} past every full page at the front of the window.
+     * Any number of threads may try this at the same time, but only one of them
+     * succeeds in moving {@code start} past each page, and that one discards it.
+     */
+    private void compact() {
+        while (true) {
+            long s = start.get();
+            Page page = pages.get(s >>> PAGE_SHIFT);
+            if (page == null || page.setCount.get() < PAGE_BITS) { return; }
+            if (start.compareAndSet(s, s + PAGE_BITS)) {
+                pages.remove(s >>> PAGE_SHIFT); // only after start has moved on
+                shiftCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Test whether the natural number {@code n} is a member of the set.
+     * Never blocks, and is safe to call from any number of threads.
+     *
+     * @param n the natural number to query
+     * @return {@code true} if {@code n} is in the set
+     */
+    public boolean contains(long n) {
+        if (n < start.get()) { return true; }      // left of window: implicit member
+        Page page = pages.get(n >>> PAGE_SHIFT);
+        if (page != null && (page.words.get((int) (n & (PAGE_BITS - 1)) >>> 6) & (1L << n)) != 0) {
+            return true;
+        }
+        // No page or no bit: either n was never added, or its page was full and
+        // has just been discarded (and perhaps briefly recreated empty by a racing
+        // add), in which case start has already moved past n.
+        return n < start.get();
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — several producer threads fill in the natural numbers together.
+    // -----------------------------------------------------------------------
+
+    /** The operations that the benchmark needs, to compare both kinds of sets. */
+    private interface Membership {
+        void add(long n);
+        boolean contains(long n);
+        long allTrueUpTo();
+    }
+
+    /**
+     * Each of the given number of threads adds every {@code threads}:th number
+     * below {@code limit}, in ascending order except that each two consecutive
+     * numbers of that thread are added in a random order, and checks that each
+     * number is a member right after adding it. Return the throughput in
+     * millions of additions per second.
+     */
+    private static double benchmark(Membership set, int threads, long limit) {
+        var failures = new AtomicInteger();
+        long startTime = System.nanoTime();
+        try (var pool = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                pool.submit(() -> {
+                    var rng = new SplittableRandom(first);
+                    for (long n = first; n < limit; n += 2L * threads) {
+                        long other = Math.min(n + threads, limit - 1);
+                        if (rng.nextBoolean()) {
+                            set.add(n);
+                            set.add(other);
+                        } else {
+                            set.add(other);
+                            set.add(n);
+                        }
+                        if (!set.contains(n) || !set.contains(other)) { failures.incrementAndGet(); }
+                    }
+                });
+            }
+        } // Closing the pool waits for all the submitted tasks to finish.
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        if (failures.get() > 0 || set.allTrueUpTo() < limit) {
+            System.out.println("ERROR: the set lost some of its elements!");
+        }
+        return limit / seconds / 1e6;
+    }
+
+    public static void main(String[] args) {
+        long limit = 50_000_000;
+        System.out.printf("Adding all numbers below %,d, %d cores available:%n",
+                limit, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= 16; threads *= 2) {
+            var concurrent = new ConcurrentNatSet();
+            double lockFree = benchmark(new Membership() {
+                public void add(long n) { concurrent.add(n); }
+                public boolean contains(long n) { return concurrent.contains(n); }
+                public long allTrueUpTo() { return concurrent.allTrueUpTo(); }
+            }, threads, limit);
+
+            // The simplest thread-safe alternative: one lock around a NatSet.
+            var plain = new NatSet();
+            double locked = benchmark(new Membership() {
+                public synchronized void add(long n) { plain.add(n); }
+                public synchronized boolean contains(long n) { return plain.contains(n); }
+                public synchronized long allTrueUpTo() { return plain.allTrueUpTo(); }
+            }, threads, limit);
+
+            System.out.printf("  %2d threads: ConcurrentNatSet %6.1f M adds/s, synchronized NatSet %6.1f M adds/s%n",
+                    threads, lockFree, locked);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.util.Random;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A <b>counting Bloom filter</b> that, unlike the plain {@link BloomFilter},
+ * also allows elements to be removed.
+ * <p>
+ * A plain Bloom filter cannot support removal, since clearing the k bits of
+ * an element could also clear bits that some other elements share, making
+ * those elements disappear. The counting filter fixes this by replacing each
+ * bit with a small <em>counter</em> of how many elements hash into it. Adding
+ * an element increments its k counters, removing decrements them, and an
+ * element is probably present if all its k counters are nonzero.
+ * <p>
+ * Four bits per counter are plenty in practice: with the optimal k, the
+ * probability of any counter ever reaching 16 is astronomically small. Still,
+ * a counter that reaches its maximum value 15 is left <em>saturated</em> at
+ * that value for good, since we no longer know its true count. Decrementing
+ * a saturated counter could cause false negatives later, whereas never
+ * decrementing it merely leaves behind a few extra false positives.
+ * <p>
+ * The counters are packed sixteen to a {@code long}, so this filter takes
+ * exactly four times the memory of a plain filter with the same {@code m}.
+ * It uses the same hash function family as {@link BloomFilter}, so the
+ * positions of its counters match the bits of a plain filter built with the
+ * same parameters.
+ *
+ * @param <E> the element type
+ * @author Ilkka Kokkarinen
+ */
+public class CountingBloomFilter<E> {
+
+    private static final int COUNTER_BITS = 4;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1; // 15, the saturation value
+
+    private final long[] counters;          // 16 counters of 4 bits per word
+    private final BloomFilter.Hashing<E> hashing;
+    private long elementCount;              // n — elements currently in the filter
+    private long saturatedCount;            // how many counters are stuck at 15
+
+    /** The one constructor that the public constructors end up calling. */
+    private CountingBloomFilter(BloomFilter.Hashing<E> hashing) {
+        this.hashing = hashing;
+        this.counters = new long[Math.toIntExact((hashing.m + 15) >>> 4)];
+    }
+
+    /**
+     * Create a counting Bloom filter sized for an expected number of elements
+     * and a desired false positive probability, in the classic 32-bit mode.
+     *
+     * @param expectedElements  the expected number of elements in the filter
+     * @param falsePositiveRate the desired false positive probability (e.g. 0.01)
+     * @param toInt             element-to-int conversion (null for hashCode)
+     */
+    public CountingBloomFilter(int expectedElements, double falsePositiveRate, ToIntFunction<E> toInt) {
+        this(new BloomFilter.Hashing<>(
+                BloomFilter.optimalK(expectedElements, BloomFilter.optimalM(expectedElements, falsePositiveRate)),
+                BloomFilter.optimalM(expectedElements, falsePositiveRate),
+                BloomFilter.DEFAULT_SEED, false, toInt, null));
+    }
+
+    /**
+     * Create a counting Bloom filter in the wide 64-bit hashing mode, sized for
+     * an expected number of elements and a desired false positive probability.
+     *
+     * @param expectedElements  the expected number of elements in the filter
+     * @param falsePositiveRate the desired false positive probability (e.g. 0.01)
+     * @param toLong            element-to-long conversion (null for hashCode)
+     * @return the new, empty filter
+     */
+    public static <E> CountingBloomFilter<E> withLongHash(long expectedElements, double falsePositiveRate,
+                                                          ToLongFunction<E> toLong) {
+        long m = BloomFilter.optimalM(expectedElements, falsePositiveRate);
+        int k = BloomFilter.optimalK(expectedElements, m);
+        return new CountingBloomFilter<>(new BloomFilter.Hashing<>(k, m, BloomFilter.DEFAULT_SEED, true, null, toLong));
+    }
+
+    // -----------------------------------------------------------------------
+    // Packed 4-bit counter access.
+    // -----------------------------------------------------------------------
+
+    /** Return the value of the counter at the given index. */
+    private int counter(long index) {
+        int shift = (int) (index & 15) << 2;
+        return (int) ((counters[(int) (index >>> 4)] >>> shift) & COUNTER_MAX);
+    }
+
+    /** Increment the counter at the given index, unless it is saturated. */
+    private void increment(long index) {
+        int shift = (int) (index & 15) << 2;
+        int word = (int) (index >>> 4);
+        long value = (counters[word] >>> shift) & COUNTER_MAX;
+        if (value < COUNTER_MAX) {
+            counters[word] += 1L << shift; // cannot carry into the next counter
+            if (value + 1 == COUNTER_MAX) { saturatedCount++; }
+        }
+    }
+
+    /** Decrement the counter at the given index, unless it is saturated. */
+    private void decrement(long index) {
+        int shift = (int) (index & 15) << 2;
+        int word = (int) (index >>> 4);
+        long value = (counters[word] >>> shift) & COUNTER_MAX;
+        if (value > 0 && value < COUNTER_MAX) {
+            counters[word] -= 1L << shift;
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Core operations
+    // -----------------------------------------------------------------------
+
+    /**
+     * Add an element to the filter by incrementing its k counters.
+     *
+     * @param element the element to add
+     */
+    public void add(E element) {
+        long h1 = hashing.hash1(element);
+        long h2 = hashing.hash2(h1);
+        for (int i = 0; i < hashing.k; i++) {
+            increment(hashing.bucket(h1, h2, i));
+        }
+        elementCount++;
+    }
+
+    /**
+     * Remove an element from the filter by decrementing its k counters. The
+     * element must have been previously added. An element that is definitely
+     * not in the filter is not removed, since decrementing its counters would
+     * corrupt the filter, but this check cannot catch an element that merely
+     * looks present due to a false positive.
+     *
+     * @param element the element to remove
+     * @return {@code true} if the element was removed, {@code false} if it
+     *         was definitely not in the filter
+     */
+    public boolean remove(E element) {
+        long h1 = hashing.hash1(element);
+        long h2 = hashing.hash2(h1);
+        for (int i = 0; i < hashing.k; i++) {
+            if (counter(hashing.bucket(h1, h2, i)) == 0) {
+                return false;
+            }
+        }
+        for (int i = 0; i < hashing.k; i++) {
+            decrement(hashing.bucket(h1, h2, i));
+        }
+        elementCount--;
+        return true;
+    }
+
+    /**
+     * Query whether an element is probably in the filter, that is, whether all
+     * its k counters are nonzero.
+     *
+     * @param element the element to look up
+     * @return whether the element is probably present
+     */
+    public boolean probablyContains(E element) {
+        long h1 = hashing.hash1(element);
+        long h2 = hashing.hash2(h1);
+        for (int i = 0; i < hashing.k; i++) {
+            if (counter(hashing.bucket(h1, h2, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // -----------------------------------------------------------------------
+    // Diagnostics
+    // -----------------------------------------------------------------------
+
+    /** Return the number of elements currently in the filter. */
+    public long size() { return elementCount; }
+
+    /** Return the number of counters that have saturated at their maximum value. */
+    public long saturatedCount() { return saturatedCount; }
+
+    /** Return the memory used by the counters, in bytes. */
+    public long memoryBytes() { return 8L * counters.length; }
+
+    /**
+     * Return the theoretical false positive probability given the current
+     * number of elements: {@code (1 - e^(-kn/m))^k}.
+     */
+    public double theoreticalFalsePositiveRate() {
+        return BloomFilter.theoreticalFalsePositiveRate(hashing.k, hashing.m, elementCount);
+    }
+
+    @Override
+    public String toString() {
+        return "CountingBloomFilter[%s, k=%d, m=%,d counters (%,d KB), n=%,d, saturated=%d, theoretical FP=%.6f]"
+                .formatted(hashing.wide ? "64-bit" : "32-bit", hashing.k, hashing.m, memoryBytes() / 1024,
+                        elementCount, saturatedCount, theoreticalFalsePositiveRate());
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — compare against the plain filter, then remove elements.
+    // -----------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        int insertCount = 1_000_000;
+        var rng = new Random(42);
+        long[] keys = rng.longs(insertCount).toArray();
+        long[] probes = rng.longs(insertCount).toArray();
+
+        var plain = BloomFilter.<Long>withLongHash(insertCount, 0.01, Long::longValue);
+        var counting = CountingBloomFilter.<Long>withLongHash(insertCount, 0.01, Long::longValue);
+
+        // Repeat the timing a few times so that the JIT compiler has warmed up.
+        System.out.printf("Inserting and probing %,d keys, best of five rounds:%n", insertCount);
+        double plainAdd = Double.MAX_VALUE, countingAdd = Double.MAX_VALUE;
+        double plainQuery = Double.MAX_VALUE, countingQuery = Double.MAX_VALUE;
+        int plainHits = 0, countingHits = 0;
+        for (int round = 0; round < 5; round++) {
+            plain = BloomFilter.withLongHash(insertCount, 0.01, Long::longValue);
+            counting = CountingBloomFilter.withLongHash(insertCount, 0.01, Long::longValue);
+            long start = System.nanoTime();
+            for (long key : keys) { plain.add(key); }
+            plainAdd = Math.min(plainAdd, (double) (System.nanoTime() - start) / insertCount);
+            start = System.nanoTime();
+            for (long key : keys) { counting.add(key); }
+            countingAdd = Math.min(countingAdd, (double) (System.nanoTime() - start) / insertCount);
+            start = System.nanoTime();
+            plainHits = 0;
+            for (long probe : probes) { if (plain.probablyContains(probe)) { plainHits++; } }
+            plainQuery = Math.min(plainQuery, (double) (System.nanoTime() - start) / insertCount);
+            start = System.nanoTime();
+            countingHits = 0;
+            for (long probe : probes) { if (counting.probablyContains(probe)) { countingHits++; } }
+            countingQuery = Math.min(countingQuery, (double) (System.nanoTime() - start) / insertCount);
+        }
+        System.out.printf("  %-10s %,10d bytes %6.1f ns/add %6.1f ns/query  FP %.6f%n", "plain",
+                (plain.bitCount() + 7) / 8, plainAdd, plainQuery, (double) plainHits / insertCount);
+        System.out.printf("  %-10s %,10d bytes %6.1f ns/add %6.1f ns/query  FP %.6f%n", "counting",
+                counting.memoryBytes(), countingAdd, countingQuery, (double) countingHits / insertCount);
+        System.out.println("  " + counting);
+
+        // Remove the first half of the keys, and verify that the second half
+        // is still all there. The false positive rate drops accordingly.
+        for (int i = 0; i < insertCount / 2; i++) { counting.remove(keys[i]); }
+        boolean allFound = true;
+        for (int i = insertCount / 2; i < insertCount; i++) { allFound &= counting.probablyContains(keys[i]); }
+        int stillClaimed = 0;
+        for (int i = 0; i < insertCount / 2; i++) { if (counting.probablyContains(keys[i])) { stillClaimed++; } }
+        System.out.println("\nAfter removing half of the keys:");
+        System.out.println("  " + counting);
+        System.out.println("  Remaining keys all found (no false negatives): " + allFound);
+        System.out.printf("  Removed keys still claimed present: %,d of %,d%n", stillClaimed, insertCount / 2);
+        System.out.println("  Removing a key never added: " + counting.remove(rng.nextLong()));
+    }
+}
@@ -0,0 +1,404 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * External merge sort of binary files of {@code int} values that are too large
+ * to fit in memory, using {@link FJMergeSort} for the parts that do fit.
+ * <p>
+ * The file is a plain sequence of 4-byte big-endian integers, the format that
+ * {@link DataOutputStream#writeInt} produces. The sort works in two phases:
+ * <ol>
+ *   <li><b>Run formation</b>: read the input one chunk at a time, as many
+ *       integers as the memory budget allows, sort each chunk in parallel with
+ *       the Fork/Join merge sort, and write it into a temporary file as a
+ *       sorted <em>run</em>. The chunk array and the merge sort workspace are
+ *       allocated once and reused for every chunk.</li>
+ *   <li><b>Merging</b>: merge the runs with a k-way merge, reading each run
+ *       through its own buffer and picking the smallest front element of all
+ *       the runs from a binary heap. If there are more runs than the memory
+ *       budget has room for buffers, groups of runs are first merged into
+ *       longer runs, in as many <em>merge passes</em> as needed.</li>
+ * </ol>
+ * All reading and writing goes through {@link FileChannel}s with large direct
+ * buffers, and the integers are moved between the buffers and the arrays in
+ * bulk. The {@link Report} of each sort tells how many bytes it read and wrote,
+ * which is what matters for an external sort: the CPU work is small next to
+ * the I/O, and each merge pass reads and writes the whole data once more.
+ *
+ * @author Ilkka Kokkarinen
+ */
+public class ExternalSort {
+
+    /** The size of the buffers used to read and write in the run formation phase. */
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+
+    /** Each run being merged gets a buffer of at least this many bytes... */
+    private static final int MIN_RUN_BUFFER_BYTES = 1 << 16;
+
+    /** ...and at most this many, since larger buffers no longer make the I/O faster. */
+    private static final int MAX_RUN_BUFFER_BYTES = 1 << 24;
+
+    /**
+     * What one sort did.
+     *
+     * @param elements     the number of integers sorted
+     * @param runs         the number of sorted runs formed in the first phase
+     * @param mergePasses  the number of merge passes over the whole data
+     * @param bytesRead    the total number of bytes read, counting the temporary files
+     * @param bytesWritten the total number of bytes written, counting the temporary files
+     * @param nanos        the total time taken, in nanoseconds
+     */
+    public record Report(long elements, int runs, int mergePasses, long bytesRead, long bytesWritten, long nanos) {
+        @Override
+        public String toString() {
+            return "%,d ints in %d runs, %d merge passes, %,d MB read, %,d MB written, %.2f s"
+                    .formatted(elements, runs, mergePasses, bytesRead >> 20, bytesWritten >> 20, nanos / 1e9);
+        }
+    }
+
+    private final long memoryBudget;    // How many bytes the sort may use for its arrays and buffers.
+    private final Path tempDir;         // Where the temporary run files go.
+    private final ForkJoinPool pool;    // Where the chunks are sorted.
+
+    // The I/O counters of the sort in progress.
+    private long bytesRead, bytesWritten;
+
+    /**
+     * Create an external sort with the given memory budget.
+     *
+     * @param memoryBudget the bytes that the sort may use for its arrays and buffers
+     * @param tempDir      the directory for the temporary run files
+     * @param pool         the pool that sorts the chunks in memory
+     */
+    public ExternalSort(long memoryBudget, Path tempDir, ForkJoinPool pool) {
+        if (memoryBudget < 4L * IO_BUFFER_BYTES) {
+            throw new IllegalArgumentException("Memory budget must be at least " + 4 * IO_BUFFER_BYTES
+                    + " bytes, got: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+        this.pool = pool;
+    }
+
+    /** Create an external sort that uses the default temporary directory and the common pool. */
+    public ExternalSort(long memoryBudget) {
+        this(memoryBudget, Path.of(System.getProperty("java.io.tmpdir")), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sort the integers of the input file into the output file. The two may
+     * not be the same file. This method is not safe to call from several threads
+     * at the same time on the same {@code ExternalSort} object.
+     *
+     * @param input  the file to sort
+     * @param output the file to write the sorted integers to
+     * @return a report of the work that the sort did
+     * @throws IOException if the input length is not a multiple of four bytes,
+     *         or if reading or writing any of the files fails
+     */
+    public Report sort(Path input, Path output) throws IOException {
+        long startTime = System.nanoTime();
+        bytesRead = 0;
+        bytesWritten = 0;
+        long size = Files.size(input);
+        if (size % 4 != 0) {
+            throw new IOException("File length " + size + " is not a multiple of 4: " + input);
+        }
+        long elements = size / 4;
+        List<Path> runs = new ArrayList<>();
+        try {
+            formRuns(input, output, elements, runs);
+            int runCount = Math.max(1, runs.size());
+            int passes = 0;
+            while (!runs.isEmpty()) {
+                runs = mergePass(runs, output);
+                passes++;
+            }
+            return new Report(elements, runCount, passes, bytesRead, bytesWritten, System.nanoTime() - startTime);
+        } finally {
+            for (Path run : runs) { Files.deleteIfExists(run); }
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Phase 1: sort the chunks that fit in memory into runs.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Cut the input into sorted runs in temporary files, added to the list. If
+     * the whole input fits into one chunk, it is sorted straight into the output.
+     */
+    private void formRuns(Path input, Path output, long elements, List<Path> runs) throws IOException {
+        // The chunk and the workspace of the merge sort take 8 bytes per integer.
+        long budgetInts = (memoryBudget - 2L * IO_BUFFER_BYTES) / 8;
+        int chunkInts = (int) Math.min(Math.min(budgetInts, elements), Integer.MAX_VALUE - 8);
+        int[] chunk = new int[chunkInts];
+        int[] workspace = new int[chunkInts];
+        try (var reader = new IntReader(input, IO_BUFFER_BYTES)) {
+            long remaining = elements;
+            do {
+                int count = (int) Math.min(remaining, chunkInts);
+                reader.read(chunk, count);
+                remaining -= count;
+                if (count > 0) {
+                    pool.invoke(new FJMergeSort(chunk, workspace, 0, count - 1));
+                }
+                boolean only = runs.isEmpty() && remaining == 0;
+                Path target = only ? output : Files.createTempFile(tempDir, "run", ".bin");
+                if (!only) { runs.add(target); }
+                try (var writer = new IntWriter(target, IO_BUFFER_BYTES)) {
+                    writer.write(chunk, count);
+                }
+            } while (remaining > 0);
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Phase 2: merge the runs, as many at a time as the budget allows.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Merge the runs in groups as large as the memory budget allows, and return
+     * the list of the merged runs. If all the runs fit in one group, they are
+     * merged straight into the output, and the returned list is empty.
+     */
+    private List<Path> mergePass(List<Path> runs, Path output) throws IOException {
+        // Every run being merged needs its buffer, and so does the output.
+        int fanIn = (int) Math.max(2, Math.min(runs.size(), memoryBudget / MIN_RUN_BUFFER_BYTES - 1));
+        var merged = new ArrayList<Path>();
+        try {
+            for (int first = 0; first < runs.size(); first += fanIn) {
+                List<Path> group = runs.subList(first, Math.min(runs.size(), first + fanIn));
+                Path target = runs.size() <= fanIn ? output : Files.createTempFile(tempDir, "run", ".bin");
+                if (target != output) { merged.add(target); }
+                mergeGroup(group, target);
+            }
+            for (Path run : runs) { Files.delete(run); }
+        } catch (IOException | RuntimeException e) {
+            // The caller only knows about the runs it gave, so clean up the new ones here.
+            for (Path run : merged) { Files.deleteIfExists(run); }
+            throw e;
+        }
+        return merged;
+    }
+
+    /** Merge the sorted runs into the target file with a k-way merge. */
+    private void mergeGroup(List<Path> group, Path target) throws IOException {
+        int k = group.size();
+        int bufferBytes = (int) Math.min(MAX_RUN_BUFFER_BYTES, memoryBudget / (k + 1)) & ~3;
+        var readers = new IntReader[k];
+        int[] heads = new int[k];   // The front element of each run.
+        int[] heap = new int[k];    // Run indices, as a binary min-heap by their front elements.
+        int size = 0;
+        try (var writer = new IntWriter(target, bufferBytes)) {
+            for (int r = 0; r < k; r++) {
+                readers[r] = new IntReader(group.get(r), bufferBytes);
+                if (readers[r].hasNext()) {
+                    heads[r] = readers[r].next();
+                    heap[size] = r;
+                    siftUp(heap, heads, size++);
+                }
+            }
+            while (size > 0) {
+                int r = heap[0];
+                writer.write(heads[r]);
+                if (readers[r].hasNext()) {
+                    heads[r] = readers[r].next();
+                } else {
+                    heap[0] = heap[--size]; // This run is done.
+                }
+                siftDown(heap, heads, size);
+            }
+        } finally {
+            for (var reader : readers) {
+                if (reader != null) { reader.close(); }
+            }
+        }
+    }
+
+    /** Restore the heap order after adding the run at position i. */
+    private static void siftUp(int[] heap, int[] heads, int i) {
+        int r = heap[i];
+        while (i > 0 && heads[heap[(i - 1) / 2]] > heads[r]) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = r;
+    }
+
+    /** Restore the heap order after the front element of the run at the root has changed. */
+    private static void siftDown(int[] heap, int[] heads, int size) {
+        if (size == 0) { return; }
+        int r = heap[0], i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) { break; }
+            if (child + 1 < size && heads[heap[child + 1]] < heads[heap[child]]) { child++; }
+            if (heads[heap[child]] >= heads[r]) { break; }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = r;
+    }
+
+    // -----------------------------------------------------------------------
+    // Buffered reading and writing of integers through file channels.
+    // -----------------------------------------------------------------------
+
+    /** Reads the big-endian integers of a file through a direct buffer. */
+    private final class IntReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        IntReader(Path path, int bufferBytes) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer = ByteBuffer.allocateDirect(bufferBytes);
+            buffer.flip(); // Start out empty.
+        }
+
+        /** Make sure that the buffer has at least one whole integer, if the file has one. */
+        boolean hasNext() throws IOException {
+            if (buffer.remaining() >= 4) { return true; }
+            buffer.compact();
+            int n;
+            while (buffer.position() < 4 && (n = channel.read(buffer)) >= 0) { bytesRead += n; }
+            // Read some more while at it, if the channel has it right away.
+            if (buffer.hasRemaining() && (n = channel.read(buffer)) > 0) { bytesRead += n; }
+            buffer.flip();
+            return buffer.remaining() >= 4;
+        }
+
+        int next() {
+            return buffer.getInt();
+        }
+
+        /** Read exactly {@code count} integers into the start of the array. */
+        void read(int[] into, int count) throws IOException {
+            int done = 0;
+            while (done < count) {
+                if (!hasNext()) { throw new EOFException("File ended after " + done + " of " + count + " ints"); }
+                int n = Math.min(count - done, buffer.remaining() / 4);
+                buffer.asIntBuffer().get(into, done, n);
+                buffer.position(buffer.position() + 4 * n);
+                done += n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /** Writes big-endian integers into a file through a direct buffer. */
+    private final class IntWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        IntWriter(Path path, int bufferBytes) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(bufferBytes);
+        }
+
+        void write(int value) throws IOException {
+            if (buffer.remaining() < 4) { flush(); }
+            buffer.putInt(value);
+        }
+
+        /** Write the first {@code count} integers of the array. */
+        void write(int[] from, int count) throws IOException {
+            int done = 0;
+            while (done < count) {
+                if (buffer.remaining() < 4) { flush(); }
+                int n = Math.min(count - done, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(from, done, n);
+                buffer.position(buffer.position() + 4 * n);
+                done += n;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) { bytesWritten += channel.write(buffer); }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — sort a file of random integers with two different budgets.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Check that the file is in ascending order and has the same number of
+     * integers with the same sum as the original file. Return the verdict.
+     */
+    private static boolean verify(Path sorted, long count, long sum) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sorted), 1 << 16))) {
+            long seen = 0, total = 0;
+            int previous = Integer.MIN_VALUE;
+            for (; seen < count; seen++) {
+                int value = in.readInt();
+                if (value < previous) { return false; }
+                previous = value;
+                total += value;
+            }
+            return in.read() == -1 && total == sum;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long count = 25_000_000;
+        Path input = Files.createTempFile("unsorted", ".bin");
+        Path output = Files.createTempFile("sorted", ".bin");
+        try {
+            System.out.printf("Writing %,d random ints (%,d MB)...%n", count, 4 * count >> 20);
+            var rng = new Random(42);
+            long sum = 0;
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(input), 1 << 16))) {
+                for (long i = 0; i < count; i++) {
+                    int value = rng.nextInt();
+                    out.writeInt(value);
+                    sum += value;
+                }
+            }
+
+            // The largest budget holds all of the data, which is then sorted in
+            // memory straight into the output, with no merging at all. A budget
+            // of a third of the data gives a handful of runs that are merged in
+            // one pass. The smallest budget gives so many runs that they no
+            // longer fit in one merge, and more passes are needed.
+            for (long budget : new long[] {200L << 20, 32L << 20, 4L << 20}) {
+                var report = new ExternalSort(budget).sort(input, output);
+                System.out.printf("Budget %,4d MB: %s, correct: %s%n", budget >> 20, report,
+                        verify(output, count, sum));
+            }
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+}
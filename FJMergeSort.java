@@ -1,7 +1,15 @@
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Parallel merge sort using Java's Fork/Join framework.
@@ -22,6 +30,21 @@ import java.util.concurrent.RecursiveAction;
  *       insertion sort instead of merge sort, because its lower overhead and
  *       cache-friendliness beat merge sort at small sizes.</li>
  * </ul>
+ * The best values of these cutoffs depend on the machine, so each sort task
+ * carries its own {@link Thresholds}, and {@link #calibration(ForkJoinPool)}
+ * measures good ones for the running JVM and number of cores.
+ * <p>
+ * The same sort works for arrays of {@code int}, {@code long} and {@code double},
+ * and for arrays of objects under a {@link Comparator}. Java generics cannot
+ * range over the primitive types, so the few operations that touch the elements
+ * are written out separately for each element type in a small <em>kernel</em>
+ * class, the same way that the JDK itself handles its primitive types. Each
+ * kernel operation works on a whole subarray at a time, so the recursion can be
+ * shared by all the element types at no cost per element. The merge always
+ * takes the element from the left half when the two are equal, which makes
+ * the sort stable. The {@code double} sort orders its elements the same way
+ * as {@link Double#compare}, with {@code -0.0} before {@code 0.0} and the
+ * {@code NaN} values at the end, just like {@link Arrays#sort(double[])}.
  *
  * Updated for Java 21+ with better naming, documentation, and a demonstration
  * main method that benchmarks parallel vs. sequential performance.
@@ -32,25 +55,30 @@ public class FJMergeSort extends RecursiveAction {
 
     // -----------------------------------------------------------------------
     // Tuning parameters — adjust based on hardware and array element size.
+    // The three size thresholds of the recursion are given per task in a
+    // Thresholds object, so that they can be calibrated for the machine.
     // -----------------------------------------------------------------------
 
-    /** Subarrays smaller than this are sorted with insertion sort. */
-    private static final int INSERTION_SORT_THRESHOLD = 50;
+    /** In the adaptive mode, natural runs shorter than this are extended by insertion sort. */
+    private static final int MIN_RUN = 32;
 
-    /**
-     * Subarrays smaller than this are not worth splitting into parallel
-     * tasks — the overhead of forking and joining would exceed the gain.
-     */
-    private static final int PARALLEL_THRESHOLD = 300;
+    /** After this many wins in a row, the galloping merge searches for the end of the streak. */
+    private static final int MIN_GALLOP = 7;
+
+    /** In the adaptive mode, each parallel task looks for runs in at least this many elements. */
+    private static final int RUN_SCAN_CHUNK = 1 << 16;
 
     // -----------------------------------------------------------------------
-    // Task state: the subarray range and the workspace buffer.
+    // Task state: the kernel that holds the arrays, and the subarray range.
     // -----------------------------------------------------------------------
 
-    private final int[] array;      // The array being sorted (shared, mutated in place).
-    private final int[] workspace;  // Temporary buffer for merging (same length as array).
+    private final Kernel kernel;    // The array being sorted, and its workspace buffer.
     private final int low;          // Inclusive start of the subarray to sort.
     private final int high;         // Inclusive end of the subarray to sort.
+    private final boolean toArray;  // Whether the result goes to the array or the workspace.
+    private final boolean root;     // Whether this task sorts the whole range it was given.
+    private final boolean adaptive; // Whether this task merges natural runs instead of halves.
+    private final Thresholds thresholds; // The size thresholds of the recursion.
 
     /**
      * Create a task to sort the subarray {@code array[low..high]} (inclusive).
@@ -61,10 +89,7 @@ public class FJMergeSort extends RecursiveAction {
      * @param high      the inclusive upper bound of the subarray
      */
     public FJMergeSort(int[] array, int[] workspace, int low, int high) {
-        this.array = array;
-        this.workspace = workspace;
-        this.low = low;
-        this.high = high;
+        this(new IntKernel(array, workspace), low, high);
     }
 
     /** Convenience constructor to sort the entire array. */
@@ -72,100 +97,1221 @@ public class FJMergeSort extends RecursiveAction {
         this(array, new int[array.length], 0, array.length - 1);
     }
 
+    /** Create a task to sort the entire {@code long} array. */
+    public FJMergeSort(long[] array) {
+        this(new LongKernel(array, new long[array.length]), 0, array.length - 1);
+    }
+
+    /**
+     * Create a task to sort the entire {@code double} array into the order
+     * of {@link Double#compare}.
+     */
+    public FJMergeSort(double[] array) {
+        this(new DoubleKernel(array, new double[array.length]), 0, array.length - 1);
+    }
+
+    /**
+     * Create a task to sort the entire array of objects into the order of the
+     * given comparator. Equal elements keep their original order.
+     */
+    public <T> FJMergeSort(T[] array, Comparator<? super T> comparator) {
+        this(new ObjectKernel<>(array, array.clone(), comparator), 0, array.length - 1);
+    }
+
+    /** The one constructor that all the others end up calling. */
+    private FJMergeSort(Kernel kernel, int low, int high) {
+        this(kernel, low, high, true, true, false, Thresholds.DEFAULT);
+    }
+
+    /** A task for one part of the sort, with the buffer where its result belongs. */
+    private FJMergeSort(Kernel kernel, int low, int high, boolean toArray, boolean root, boolean adaptive,
+                        Thresholds thresholds) {
+        this.kernel = kernel;
+        this.low = low;
+        this.high = high;
+        this.toArray = toArray;
+        this.root = root;
+        this.adaptive = adaptive;
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Return a task that sorts the same subarray in the <em>adaptive</em> mode.
+     * Instead of always splitting at the midpoint, the adaptive sort first finds
+     * the ascending and descending <em>natural runs</em> that are already in
+     * the data, in parallel, and then merges those runs pairwise in a tree of
+     * parallel tasks, with a merge that gallops over long stretches. This is
+     * the idea of TimSort, the sort that Java uses for objects, made parallel.
+     * Nearly sorted data, such as the concatenation of a few sorted files, then
+     * sorts in close to linear time. Random data has no useful runs, and sorts
+     * a bit slower than in the normal mode.
+     *
+     * @return the task that sorts the same subarray adaptively
+     */
+    public FJMergeSort adaptive() {
+        return new FJMergeSort(kernel, low, high, true, true, true, thresholds);
+    }
+
+    /**
+     * Return a task that sorts the same subarray in the same mode, using the
+     * given size thresholds instead of the defaults. The thresholds from
+     * {@link #calibration(ForkJoinPool)} suit the machine that the sort runs on.
+     *
+     * @param thresholds the size thresholds for the recursion
+     * @return the task that sorts the same subarray with those thresholds
+     */
+    public FJMergeSort withThresholds(Thresholds thresholds) {
+        return new FJMergeSort(kernel, low, high, true, true, adaptive, Objects.requireNonNull(thresholds));
+    }
+
+    /** Return the size thresholds that this task uses. */
+    public Thresholds thresholds() {
+        return thresholds;
+    }
+
     // -----------------------------------------------------------------------
     // RecursiveAction entry point — called by the Fork/Join framework.
     // -----------------------------------------------------------------------
 
     @Override
     protected void compute() {
-        parallelMergeSort(low, high);
+        if (adaptive) {
+            adaptiveSort();
+            return;
+        }
+        if (root) {
+            // Start with the same elements in both buffers, so that the bottom
+            // level of the recursion can sort its pieces in either one of them.
+            new Copy(kernel, thresholds, false, low, high + 1).invoke();
+        }
+        parallelMergeSort(low, high, toArray);
     }
 
     // -----------------------------------------------------------------------
-    // The recursive merge sort with parallel forking.
+    // The recursive merge sort with parallel forking. Instead of merging into
+    // the workspace and then copying the result back into the array at every
+    // level, the array and the workspace take turns as the source and the
+    // destination of the merges: to get the sorted result into one buffer,
+    // the two halves are sorted into the other buffer, and then merged from
+    // there. The only extra copy is the one at the very start.
     // -----------------------------------------------------------------------
 
     /**
-     * Sort {@code array[low..high]} using merge sort. If the subarray is
-     * large enough, the left half is forked to a new parallel task while
-     * the right half is sorted in this thread.
+     * Sort {@code array[low..high]} using merge sort, leaving the result in
+     * {@code array} if {@code toArray} is true, and in {@code workspace} otherwise.
+     * Both buffers must contain the original elements of the subarray. If the
+     * subarray is large enough, the left half is forked to a new parallel task
+     * while the right half is sorted in this thread.
      */
-    private void parallelMergeSort(int low, int high) {
+    private void parallelMergeSort(int low, int high, boolean toArray) {
         int size = high - low + 1;
 
-        if (size <= INSERTION_SORT_THRESHOLD) {
-            // Too small for merge sort overhead — use insertion sort.
-            insertionSort(low, high);
+        if (size <= thresholds.insertionSort()) {
+            // Too small for merge sort overhead — use insertion sort, right
+            // there in the buffer where the result belongs.
+            kernel.insertionSort(!toArray, low, high);
             return;
         }
 
         int mid = low + (high - low) / 2; // Avoids overflow vs. (low + high) / 2.
 
-        if (size > PARALLEL_THRESHOLD) {
+        // The halves are sorted into the other buffer, to be merged from there.
+        if (size > thresholds.parallel()) {
             // Large enough to benefit from parallelism: fork the left half
             // as a new task, sort the right half here, then wait for the left.
-            var leftTask = new FJMergeSort(array, workspace, low, mid);
-            leftTask.fork();                    // Start left half in parallel.
-            parallelMergeSort(mid + 1, high);   // Sort right half in this thread.
-            leftTask.join();                    // Wait for left half to finish.
+            var leftTask = new FJMergeSort(kernel, low, mid, !toArray, false, false, thresholds);
+            leftTask.fork();                              // Start left half in parallel.
+            parallelMergeSort(mid + 1, high, !toArray);   // Sort right half in this thread.
+            leftTask.join();                              // Wait for left half to finish.
         } else {
             // Too small for parallelism overhead — sort both halves sequentially.
-            parallelMergeSort(low, mid);
-            parallelMergeSort(mid + 1, high);
+            parallelMergeSort(low, mid, !toArray);
+            parallelMergeSort(mid + 1, high, !toArray);
+        }
+
+        // Either way, the two sorted halves must now be merged into this buffer.
+        // If the halves are already in order, which is common when the input is
+        // partly sorted, a plain copy does the job. A big merge is itself done
+        // in parallel, or it would leave all the other threads idle near the top
+        // of the recursion, and the merge at the root alone would be done by
+        // one thread.
+        boolean fromWorkspace = toArray;
+        if (kernel.inOrder(fromWorkspace, mid)) {
+            copy(kernel, thresholds, fromWorkspace, low, high + 1);
+        } else if (size > thresholds.parallelMerge()) {
+            new ParallelMerge(kernel, thresholds, fromWorkspace, false, low, mid + 1, mid + 1, high + 1, low).invoke();
+        } else {
+            kernel.mergeRange(fromWorkspace, low, mid + 1, mid + 1, high + 1, low);
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // The parallel merge. The first k elements of the merged output consist of
+    // some i first elements of the left half and the k - i first elements of the
+    // right half. This split point i, the co-rank of k, can be found with binary
+    // search, so the output can be cut in two at its middle, and both pieces
+    // merged independently of each other, recursively.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Merge the sorted ranges {@code [aLow..aHigh)} and {@code [bLow..bHigh)}
+     * of one buffer into the other buffer starting at {@code dest}, splitting
+     * the work recursively into pieces that are merged in parallel.
+     */
+    private static final class ParallelMerge extends RecursiveAction {
+        private final Kernel kernel;
+        private final Thresholds thresholds;
+        private final boolean fromWorkspace;
+        private final boolean gallop;   // Whether the pieces are merged with gallopMerge.
+        private final int aLow, aHigh, bLow, bHigh, dest;
+
+        ParallelMerge(Kernel kernel, Thresholds thresholds, boolean fromWorkspace, boolean gallop,
+                      int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            this.kernel = kernel;
+            this.thresholds = thresholds;
+            this.fromWorkspace = fromWorkspace;
+            this.gallop = gallop;
+            this.aLow = aLow;
+            this.aHigh = aHigh;
+            this.bLow = bLow;
+            this.bHigh = bHigh;
+            this.dest = dest;
         }
 
-        // Either way, the two sorted halves must now be merged.
-        merge(low, mid, high);
+        @Override
+        protected void compute() {
+            int size = (aHigh - aLow) + (bHigh - bLow);
+            if (size <= thresholds.parallelMerge()) {
+                if (gallop) {
+                    kernel.gallopMerge(fromWorkspace, aLow, aHigh, bLow, bHigh, dest);
+                } else {
+                    kernel.mergeRange(fromWorkspace, aLow, aHigh, bLow, bHigh, dest);
+                }
+                return;
+            }
+            int k = size / 2;
+            int i = kernel.coRank(fromWorkspace, k, aLow, aHigh, bLow, bHigh);
+            int j = bLow + k - (i - aLow);
+            invokeAll(new ParallelMerge(kernel, thresholds, fromWorkspace, gallop, aLow, i, bLow, j, dest),
+                    new ParallelMerge(kernel, thresholds, fromWorkspace, gallop, i, aHigh, j, bHigh, dest + k));
+        }
+    }
+
+    /** Copy the range {@code [from..to)} of one buffer into the other buffer in parallel. */
+    private static final class Copy extends RecursiveAction {
+        private final Kernel kernel;
+        private final Thresholds thresholds;
+        private final boolean fromWorkspace;
+        private final int from, to;
+
+        Copy(Kernel kernel, Thresholds thresholds, boolean fromWorkspace, int from, int to) {
+            this.kernel = kernel;
+            this.thresholds = thresholds;
+            this.fromWorkspace = fromWorkspace;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= thresholds.parallelMerge()) {
+                kernel.copy(fromWorkspace, from, to);
+                return;
+            }
+            int mid = from + (to - from) / 2;
+            invokeAll(new Copy(kernel, thresholds, fromWorkspace, from, mid),
+                    new Copy(kernel, thresholds, fromWorkspace, mid, to));
+        }
     }
 
     // -----------------------------------------------------------------------
-    // Merge two adjacent sorted subarrays into one sorted subarray.
+    // The adaptive mode. The subarray is cut into chunks that are scanned for
+    // natural runs in parallel, and each chunk is copied into the workspace
+    // right after it has been scanned, so that both buffers again start with
+    // the same contents. The runs are then merged in a balanced tree, where
+    // the buffers take turns the same way as in the normal mode.
     // -----------------------------------------------------------------------
 
+    private void adaptiveSort() {
+        if (high <= low) { return; }
+        int parallelism = (ForkJoinTask.inForkJoinPool() ? getPool() : ForkJoinPool.commonPool()).getParallelism();
+        int chunkCount = Math.max(1, Math.min(4 * parallelism, (high - low + 1) / RUN_SCAN_CHUNK));
+        var scans = new ArrayList<RunScan>();
+        for (int c = 0; c < chunkCount; c++) {
+            int from = low + (int) ((long) (high - low + 1) * c / chunkCount);
+            int to = low + (int) ((long) (high - low + 1) * (c + 1) / chunkCount);
+            scans.add(new RunScan(kernel, from, to));
+        }
+        invokeAll(scans);
+
+        // The starting positions of all the runs, and the end of the last one.
+        int runCount = scans.stream().mapToInt(scan -> scan.runCount).sum();
+        int[] runs = new int[runCount + 1];
+        int r = 0;
+        for (var scan : scans) {
+            System.arraycopy(scan.runStarts, 0, runs, r, scan.runCount);
+            r += scan.runCount;
+        }
+        runs[runCount] = high + 1;
+        new RunMerge(kernel, thresholds, runs, 0, runCount, true).invoke();
+    }
+
     /**
-     * Merge the sorted subarrays {@code array[low..mid]} and
-     * {@code array[mid+1..high]} into a single sorted subarray.
-     * Uses {@code workspace} as temporary storage, then copies back.
+     * Find the natural runs that start in {@code array[from..to)}, extending
+     * the short ones to {@code MIN_RUN} elements with insertion sort, and then
+     * copy that part of the array into the workspace.
      */
-    private void merge(int low, int mid, int high) {
-        int left = low;         // Cursor in the left half.
-        int right = mid + 1;    // Cursor in the right half.
-        int dest = low;         // Write position in workspace.
+    private static final class RunScan extends RecursiveAction {
+        private final Kernel kernel;
+        private final int from, to;
+        private int[] runStarts = new int[16];
+        private int runCount;
+
+        RunScan(Kernel kernel, int from, int to) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int start = from;
+            while (start < to) {
+                int end = kernel.runEnd(start, to);
+                if (end - start < MIN_RUN) {
+                    end = Math.min(start + MIN_RUN, to);
+                    kernel.insertionSort(false, start, end - 1);
+                }
+                if (runCount == runStarts.length) { runStarts = Arrays.copyOf(runStarts, 2 * runCount); }
+                runStarts[runCount++] = start;
+                start = end;
+            }
+            kernel.copy(false, from, to);
+        }
+    }
 
-        // Merge by always picking the smaller of the two front elements.
-        while (left <= mid && right <= high) {
-            if (array[left] <= array[right]) {
-                workspace[dest++] = array[left++];
+    /**
+     * Merge the runs {@code runs[first..last)} into one sorted range, in the
+     * array if {@code toArray} is true, and in the workspace otherwise. Run
+     * {@code r} occupies the positions {@code [runs[r]..runs[r+1])}.
+     */
+    private static final class RunMerge extends RecursiveAction {
+        private final Kernel kernel;
+        private final Thresholds thresholds;
+        private final int[] runs;
+        private final int first, last;
+        private final boolean toArray;
+
+        RunMerge(Kernel kernel, Thresholds thresholds, int[] runs, int first, int last, boolean toArray) {
+            this.kernel = kernel;
+            this.thresholds = thresholds;
+            this.runs = runs;
+            this.first = first;
+            this.last = last;
+            this.toArray = toArray;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) { return; } // A single run is already in both buffers.
+            int low = runs[first], high = runs[last];
+
+            // Split at the run boundary nearest to the middle of the elements,
+            // so that a few long runs do not unbalance the tree.
+            int split = Arrays.binarySearch(runs, first + 1, last, low + (high - low) / 2);
+            if (split < 0) {
+                split = -split - 1;
+                if (split == last || (split > first + 1
+                        && runs[split] - (low + (high - low) / 2) > (low + (high - low) / 2) - runs[split - 1])) {
+                    split--;
+                }
+            }
+            var left = new RunMerge(kernel, thresholds, runs, first, split, !toArray);
+            var right = new RunMerge(kernel, thresholds, runs, split, last, !toArray);
+            if (high - low > thresholds.parallel()) {
+                invokeAll(left, right);
             } else {
-                workspace[dest++] = array[right++];
+                left.compute();
+                right.compute();
+            }
+
+            // Merge from the other buffer into this one. The part at the start of
+            // the left run that is at most the first element of the right run, and
+            // the part at the end of the right run that is at least the last element
+            // of the left run, are already in place, so only the middle is merged.
+            boolean fromWorkspace = toArray;
+            int mid = runs[split];
+            if (kernel.inOrder(fromWorkspace, mid - 1)) {
+                copy(kernel, thresholds, fromWorkspace, low, high);
+                return;
+            }
+            int aStart = kernel.gallopRight(fromWorkspace, mid, low, mid);
+            int bEnd = kernel.gallopLeft(fromWorkspace, mid - 1, mid, high);
+            copy(kernel, thresholds, fromWorkspace, low, aStart);
+            copy(kernel, thresholds, fromWorkspace, bEnd, high);
+            if (bEnd - aStart > thresholds.parallelMerge()) {
+                new ParallelMerge(kernel, thresholds, fromWorkspace, true, aStart, mid, mid, bEnd, aStart).invoke();
+            } else {
+                kernel.gallopMerge(fromWorkspace, aStart, mid, mid, bEnd, aStart);
             }
         }
-        // Copy whichever half has remaining elements.
-        while (left <= mid)   { workspace[dest++] = array[left++]; }
-        while (right <= high) { workspace[dest++] = array[right++]; }
+    }
 
-        // Copy the merged result back into the original array.
-        System.arraycopy(workspace, low, array, low, high - low + 1);
+    /** Copy the range {@code [from..to)} of one buffer into the other, in parallel if it is long. */
+    private static void copy(Kernel kernel, Thresholds thresholds, boolean fromWorkspace, int from, int to) {
+        if (to - from > thresholds.parallelMerge()) {
+            new Copy(kernel, thresholds, fromWorkspace, from, to).invoke();
+        } else {
+            kernel.copy(fromWorkspace, from, to);
+        }
     }
 
     // -----------------------------------------------------------------------
-    // Insertion sort for small subarrays — low overhead, cache-friendly.
+    // The size thresholds, and their calibration. The best thresholds depend
+    // on the cost of forking a task on this JVM, the number of cores, and the
+    // cache sizes, so instead of guessing, they can be measured: sort the same
+    // random data with each candidate value of one threshold at a time, and
+    // keep the fastest. The result is cached for each degree of parallelism.
     // -----------------------------------------------------------------------
 
     /**
-     * Sort {@code array[low..high]} with insertion sort. For small subarrays,
-     * this beats merge sort due to lower constant factors and better cache
-     * locality (no auxiliary buffer needed).
+     * The three size thresholds of the recursion.
+     *
+     * @param insertionSort subarrays of at most this many elements are sorted with insertion sort
+     * @param parallel      subarrays of more elements than this are split into parallel tasks
+     * @param parallelMerge merges and copies of more elements than this are split into parallel pieces
+     */
+    public record Thresholds(int insertionSort, int parallel, int parallelMerge) {
+
+        /** The thresholds that the sort uses unless it is given others. */
+        public static final Thresholds DEFAULT = new Thresholds(50, 300, 1 << 13);
+
+        public Thresholds {
+            if (insertionSort < 1 || parallel < 1 || parallelMerge < 1) {
+                throw new IllegalArgumentException("Thresholds must be positive: " + insertionSort
+                        + ", " + parallel + ", " + parallelMerge);
+            }
+        }
+    }
+
+    /**
+     * One measurement of the calibration.
+     *
+     * @param threshold the name of the threshold being calibrated
+     * @param value     the candidate value of that threshold
+     * @param millis    the best time of sorting the calibration data with it
+     */
+    public record Trial(String threshold, int value, double millis) {}
+
+    /**
+     * The result of calibrating the thresholds for one degree of parallelism.
+     * The {@code toString} method gives a printable report of all the trials.
+     *
+     * @param parallelism the number of threads in the pool that was calibrated
+     * @param thresholds  the fastest thresholds found
+     * @param trials      the measurements, in the order they were made
      */
-    private void insertionSort(int low, int high) {
-        for (int i = low + 1; i <= high; i++) {
-            int key = array[i];
-            int j = i;
-            while (j > low && array[j - 1] > key) {
-                array[j] = array[j - 1];
-                j--;
+    public record Calibration(int parallelism, Thresholds thresholds, List<Trial> trials) {
+        @Override
+        public String toString() {
+            var result = new StringBuilder("Calibrated for %d threads: %s%n".formatted(parallelism, thresholds));
+            for (var trial : trials) {
+                int chosen = switch (trial.threshold()) {
+                    case "insertion sort" -> thresholds.insertionSort();
+                    case "parallel" -> thresholds.parallel();
+                    default -> thresholds.parallelMerge();
+                };
+                result.append("  %-15s %,9d: %9.3f ms%s%n".formatted(trial.threshold(), trial.value(),
+                        trial.millis(), trial.value() == chosen ? "  <- chosen" : ""));
+            }
+            return result.toString();
+        }
+    }
+
+    /** The candidate values of each threshold, in ascending order. */
+    private static final int[] INSERTION_SORT_CANDIDATES = {8, 16, 24, 32, 48, 64, 96, 128};
+    private static final int[] PARALLEL_CANDIDATES = {1 << 8, 1 << 10, 1 << 12, 1 << 14, 1 << 16};
+    private static final int[] PARALLEL_MERGE_CANDIDATES = {1 << 11, 1 << 13, 1 << 15, 1 << 17};
+
+    /** How many times each candidate is timed. The best time counts, the rest is noise. */
+    private static final int CALIBRATION_REPEATS = 5;
+
+    /** The calibrations done so far, by the parallelism of the pool. */
+    private static final Map<Integer, Calibration> CALIBRATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Return the thresholds calibrated for the parallelism of the given pool,
+     * measuring them the first time that they are asked for. The measurement
+     * sorts half a million integers several dozen times in that pool, so it
+     * takes a moment, and should not be done while the pool is busy.
+     *
+     * @param pool the pool that the sorts will run in
+     * @return the calibration for that degree of parallelism
+     */
+    public static Calibration calibration(ForkJoinPool pool) {
+        return CALIBRATIONS.computeIfAbsent(pool.getParallelism(), parallelism -> calibrate(pool));
+    }
+
+    private static Calibration calibrate(ForkJoinPool pool) {
+        var rng = new Random(42);
+        var trials = new ArrayList<Trial>();
+
+        // Insertion sort is used at the leaves of the recursion in every thread
+        // alike, so it is calibrated on a sort that runs in one task.
+        int[] data = rng.ints(1 << 17).toArray();
+        bestMillis(pool, data, Thresholds.DEFAULT); // Warm up the JIT compiler.
+        int insertionSort = fastest(trials, "insertion sort", INSERTION_SORT_CANDIDATES,
+                c -> bestMillis(pool, data, new Thresholds(c, Integer.MAX_VALUE, Integer.MAX_VALUE)));
+
+        // The parallel thresholds are calibrated on an array that is larger
+        // than the data cache, in the pool where the sorts will run.
+        int[] large = rng.ints(1 << 19).toArray();
+        bestMillis(pool, large, Thresholds.DEFAULT);
+        int parallel = fastest(trials, "parallel", PARALLEL_CANDIDATES,
+                c -> bestMillis(pool, large, new Thresholds(insertionSort, c, Thresholds.DEFAULT.parallelMerge())));
+        int parallelMerge = fastest(trials, "parallel merge", PARALLEL_MERGE_CANDIDATES,
+                c -> bestMillis(pool, large, new Thresholds(insertionSort, parallel, c)));
+
+        return new Calibration(pool.getParallelism(), new Thresholds(insertionSort, parallel, parallelMerge),
+                List.copyOf(trials));
+    }
+
+    /** Time every candidate, record the trials, and return the fastest candidate. */
+    private static int fastest(List<Trial> trials, String threshold, int[] candidates, IntToDoubleFunction time) {
+        int best = candidates[0];
+        double bestTime = Double.POSITIVE_INFINITY;
+        for (int candidate : candidates) {
+            double millis = time.applyAsDouble(candidate);
+            trials.add(new Trial(threshold, candidate, millis));
+            if (millis < bestTime) {
+                best = candidate;
+                bestTime = millis;
+            }
+        }
+        return best;
+    }
+
+    /** Sort copies of the data with the given thresholds, and return the best time. */
+    private static double bestMillis(ForkJoinPool pool, int[] data, Thresholds thresholds) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int r = 0; r < CALIBRATION_REPEATS; r++) {
+            int[] copy = data.clone();
+            best = Math.min(best, timeMillis(() -> pool.invoke(new FJMergeSort(copy).withThresholds(thresholds))));
+        }
+        return best;
+    }
+
+    // -----------------------------------------------------------------------
+    // The kernels — the only code that depends on the element type.
+    // -----------------------------------------------------------------------
+
+    /**
+     * The operations on the elements of one array and its workspace. The two
+     * buffers take turns as the source and the destination, so each operation
+     * is told which one of them to read.
+     */
+    private abstract static class Kernel {
+
+        /**
+         * Sort the range {@code [low..high]} of the chosen buffer with insertion
+         * sort. For small subarrays, this beats merge sort due to lower constant
+         * factors and better cache locality (no auxiliary buffer needed).
+         */
+        abstract void insertionSort(boolean inWorkspace, int low, int high);
+
+        /**
+         * Merge the sorted ranges {@code [aLow..aHigh)} and {@code [bLow..bHigh)}
+         * of one buffer into the other buffer, starting at position {@code dest}.
+         * On ties, the element of the first range wins.
+         */
+        abstract void mergeRange(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest);
+
+        /**
+         * The same as mergeRange, except that once either range has won
+         * {@code MIN_GALLOP} times in a row, the length of its winning streak
+         * is found with an exponential search, and the whole streak is copied
+         * at once. This makes merging runs that interleave only a little, as in
+         * nearly sorted data, take far fewer comparisons than elements.
+         */
+        abstract void gallopMerge(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest);
+
+        /**
+         * Return the first position in {@code [from..to)} of the chosen buffer
+         * whose element belongs strictly after the element at {@code keyAt},
+         * using an exponential search from {@code from}.
+         */
+        abstract int gallopRight(boolean inWorkspace, int keyAt, int from, int to);
+
+        /**
+         * Return the first position in {@code [from..to)} of the chosen buffer
+         * whose element does not belong strictly before the element at
+         * {@code keyAt}, using an exponential search from {@code from}.
+         */
+        abstract int gallopLeft(boolean inWorkspace, int keyAt, int from, int to);
+
+        /**
+         * Return the co-rank of {@code k} in the merge of the sorted ranges
+         * {@code [aLow..aHigh)} and {@code [bLow..bHigh)} of the chosen buffer:
+         * the position {@code i} such that the first {@code k} elements of the
+         * merged output are the elements in {@code [aLow..i)} followed by the
+         * first {@code k - (i - aLow)} elements of the second range, with ties
+         * resolved as in mergeRange.
+         */
+        abstract int coRank(boolean inWorkspace, int k, int aLow, int aHigh, int bLow, int bHigh);
+
+        /**
+         * Return whether the element at {@code mid} of the chosen buffer belongs
+         * before or together with the element right after it, so that two
+         * sorted ranges that meet there are already in order as a whole.
+         */
+        abstract boolean inOrder(boolean inWorkspace, int mid);
+
+        /**
+         * Find the natural run of {@code array} that starts at {@code low}, and
+         * return the position right after it, at most {@code high}. The run is
+         * either ascending, or strictly descending, in which case it is reversed.
+         */
+        abstract int runEnd(int low, int high);
+
+        /** Copy the range {@code [from..to)} of one buffer into the other buffer. */
+        abstract void copy(boolean fromWorkspace, int from, int to);
+    }
+
+    private static final class IntKernel extends Kernel {
+        private final int[] array;      // The array being sorted (shared, mutated in place).
+        private final int[] workspace;  // Temporary buffer for merging (same length as array).
+
+        IntKernel(int[] array, int[] workspace) {
+            this.array = array;
+            this.workspace = workspace;
+        }
+
+        @Override
+        void insertionSort(boolean inWorkspace, int low, int high) {
+            int[] a = inWorkspace ? workspace : array;
+            for (int i = low + 1; i <= high; i++) {
+                int key = a[i];
+                int j = i;
+                while (j > low && a[j - 1] > key) {
+                    a[j] = a[j - 1];
+                    j--;
+                }
+                a[j] = key;
+            }
+        }
+
+        @Override
+        void mergeRange(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            int[] src = fromWorkspace ? workspace : array;
+            int[] dst = fromWorkspace ? array : workspace;
+            int a = aLow;           // Cursor in the first range.
+            int b = bLow;           // Cursor in the second range.
+
+            // Merge by always picking the smaller of the two front elements.
+            while (a < aHigh && b < bHigh) {
+                if (src[a] <= src[b]) {
+                    dst[dest++] = src[a++];
+                } else {
+                    dst[dest++] = src[b++];
+                }
+            }
+            // Copy whichever range has remaining elements.
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        void gallopMerge(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            int[] src = fromWorkspace ? workspace : array;
+            int[] dst = fromWorkspace ? array : workspace;
+            int a = aLow, b = bLow;
+            int aWins = 0, bWins = 0;   // How many times in a row each range has won.
+            while (a < aHigh && b < bHigh) {
+                if (src[a] <= src[b]) {
+                    dst[dest++] = src[a++];
+                    bWins = 0;
+                    if (++aWins == MIN_GALLOP) {
+                        // The first range keeps winning, so find out with one
+                        // exponential search how much longer it goes on winning.
+                        int end = gallopRight(fromWorkspace, b, a, aHigh);
+                        System.arraycopy(src, a, dst, dest, end - a);
+                        dest += end - a;
+                        a = end;
+                        aWins = 0;
+                    }
+                } else {
+                    dst[dest++] = src[b++];
+                    aWins = 0;
+                    if (++bWins == MIN_GALLOP) {
+                        int end = gallopLeft(fromWorkspace, a, b, bHigh);
+                        System.arraycopy(src, b, dst, dest, end - b);
+                        dest += end - b;
+                        b = end;
+                        bWins = 0;
+                    }
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        int gallopRight(boolean inWorkspace, int keyAt, int from, int to) {
+            int[] a = inWorkspace ? workspace : array;
+            int key = a[keyAt];
+            // Everything before lo is at most the key. Probe ahead in steps that
+            // double each time, and then binary search the last step.
+            int lo = from, hi = from, step = 1;
+            while (hi < to && a[hi] <= key) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (a[mid] <= key) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int gallopLeft(boolean inWorkspace, int keyAt, int from, int to) {
+            int[] a = inWorkspace ? workspace : array;
+            int key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && key > a[hi]) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (key > a[mid]) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int coRank(boolean inWorkspace, int k, int aLow, int aHigh, int bLow, int bHigh) {
+            int[] a = inWorkspace ? workspace : array;
+            // Taking i elements from the first range is too few exactly when its
+            // next element still belongs before the last one taken from the second.
+            int lo = Math.max(0, k - (bHigh - bLow)), hi = Math.min(k, aHigh - aLow);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1;
+                if (a[aLow + i] <= a[bLow + k - i - 1]) { lo = i + 1; } else { hi = i; }
+            }
+            return aLow + lo;
+        }
+
+        @Override
+        boolean inOrder(boolean inWorkspace, int mid) {
+            int[] a = inWorkspace ? workspace : array;
+            return a[mid] <= a[mid + 1];
+        }
+
+        @Override
+        int runEnd(int low, int high) {
+            int end = low + 1;
+            if (end == high) { return end; }
+            if (array[low] > array[end]) {
+                // A strictly descending run, reversed in place. Equal elements
+                // end the run, so that the reversal cannot break stability.
+                while (end + 1 < high && array[end] > array[end + 1]) { end++; }
+                end++;
+                for (int i = low, j = end - 1; i < j; i++, j--) {
+                    int tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                }
+            } else {
+                while (end + 1 < high && array[end] <= array[end + 1]) { end++; }
+                end++;
+            }
+            return end;
+        }
+
+        @Override
+        void copy(boolean fromWorkspace, int from, int to) {
+            if (fromWorkspace) {
+                System.arraycopy(workspace, from, array, from, to - from);
+            } else {
+                System.arraycopy(array, from, workspace, from, to - from);
+            }
+        }
+    }
+
+    private static final class LongKernel extends Kernel {
+        private final long[] array;
+        private final long[] workspace;
+
+        LongKernel(long[] array, long[] workspace) {
+            this.array = array;
+            this.workspace = workspace;
+        }
+
+        @Override
+        void insertionSort(boolean inWorkspace, int low, int high) {
+            long[] a = inWorkspace ? workspace : array;
+            for (int i = low + 1; i <= high; i++) {
+                long key = a[i];
+                int j = i;
+                while (j > low && a[j - 1] > key) {
+                    a[j] = a[j - 1];
+                    j--;
+                }
+                a[j] = key;
+            }
+        }
+
+        @Override
+        void mergeRange(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            long[] src = fromWorkspace ? workspace : array;
+            long[] dst = fromWorkspace ? array : workspace;
+            int a = aLow;
+            int b = bLow;
+            while (a < aHigh && b < bHigh) {
+                if (src[a] <= src[b]) {
+                    dst[dest++] = src[a++];
+                } else {
+                    dst[dest++] = src[b++];
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        void gallopMerge(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            long[] src = fromWorkspace ? workspace : array;
+            long[] dst = fromWorkspace ? array : workspace;
+            int a = aLow, b = bLow;
+            int aWins = 0, bWins = 0;
+            while (a < aHigh && b < bHigh) {
+                if (src[a] <= src[b]) {
+                    dst[dest++] = src[a++];
+                    bWins = 0;
+                    if (++aWins == MIN_GALLOP) {
+                        int end = gallopRight(fromWorkspace, b, a, aHigh);
+                        System.arraycopy(src, a, dst, dest, end - a);
+                        dest += end - a;
+                        a = end;
+                        aWins = 0;
+                    }
+                } else {
+                    dst[dest++] = src[b++];
+                    aWins = 0;
+                    if (++bWins == MIN_GALLOP) {
+                        int end = gallopLeft(fromWorkspace, a, b, bHigh);
+                        System.arraycopy(src, b, dst, dest, end - b);
+                        dest += end - b;
+                        b = end;
+                        bWins = 0;
+                    }
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        int gallopRight(boolean inWorkspace, int keyAt, int from, int to) {
+            long[] a = inWorkspace ? workspace : array;
+            long key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && a[hi] <= key) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (a[mid] <= key) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int gallopLeft(boolean inWorkspace, int keyAt, int from, int to) {
+            long[] a = inWorkspace ? workspace : array;
+            long key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && key > a[hi]) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (key > a[mid]) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int coRank(boolean inWorkspace, int k, int aLow, int aHigh, int bLow, int bHigh) {
+            long[] a = inWorkspace ? workspace : array;
+            int lo = Math.max(0, k - (bHigh - bLow)), hi = Math.min(k, aHigh - aLow);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1;
+                if (a[aLow + i] <= a[bLow + k - i - 1]) { lo = i + 1; } else { hi = i; }
+            }
+            return aLow + lo;
+        }
+
+        @Override
+        boolean inOrder(boolean inWorkspace, int mid) {
+            long[] a = inWorkspace ? workspace : array;
+            return a[mid] <= a[mid + 1];
+        }
+
+        @Override
+        int runEnd(int low, int high) {
+            int end = low + 1;
+            if (end == high) { return end; }
+            if (array[low] > array[end]) {
+                while (end + 1 < high && array[end] > array[end + 1]) { end++; }
+                end++;
+                for (int i = low, j = end - 1; i < j; i++, j--) {
+                    long tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                }
+            } else {
+                while (end + 1 < high && array[end] <= array[end + 1]) { end++; }
+                end++;
+            }
+            return end;
+        }
+
+        @Override
+        void copy(boolean fromWorkspace, int from, int to) {
+            if (fromWorkspace) {
+                System.arraycopy(workspace, from, array, from, to - from);
+            } else {
+                System.arraycopy(array, from, workspace, from, to - from);
+            }
+        }
+    }
+
+    /**
+     * The operator {@code <=} would get {@code NaN} and {@code -0.0} wrong, so
+     * the elements are compared with {@code Double.compare}, which the JIT
+     * compiler turns into a couple of plain comparisons in the common case.
+     */
+    private static final class DoubleKernel extends Kernel {
+        private final double[] array;
+        private final double[] workspace;
+
+        DoubleKernel(double[] array, double[] workspace) {
+            this.array = array;
+            this.workspace = workspace;
+        }
+
+        @Override
+        void insertionSort(boolean inWorkspace, int low, int high) {
+            double[] a = inWorkspace ? workspace : array;
+            for (int i = low + 1; i <= high; i++) {
+                double key = a[i];
+                int j = i;
+                while (j > low && Double.compare(a[j - 1], key) > 0) {
+                    a[j] = a[j - 1];
+                    j--;
+                }
+                a[j] = key;
+            }
+        }
+
+        @Override
+        void mergeRange(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            double[] src = fromWorkspace ? workspace : array;
+            double[] dst = fromWorkspace ? array : workspace;
+            int a = aLow;
+            int b = bLow;
+            while (a < aHigh && b < bHigh) {
+                if (Double.compare(src[a], src[b]) <= 0) {
+                    dst[dest++] = src[a++];
+                } else {
+                    dst[dest++] = src[b++];
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        void gallopMerge(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            double[] src = fromWorkspace ? workspace : array;
+            double[] dst = fromWorkspace ? array : workspace;
+            int a = aLow, b = bLow;
+            int aWins = 0, bWins = 0;
+            while (a < aHigh && b < bHigh) {
+                if (Double.compare(src[a], src[b]) <= 0) {
+                    dst[dest++] = src[a++];
+                    bWins = 0;
+                    if (++aWins == MIN_GALLOP) {
+                        int end = gallopRight(fromWorkspace, b, a, aHigh);
+                        System.arraycopy(src, a, dst, dest, end - a);
+                        dest += end - a;
+                        a = end;
+                        aWins = 0;
+                    }
+                } else {
+                    dst[dest++] = src[b++];
+                    aWins = 0;
+                    if (++bWins == MIN_GALLOP) {
+                        int end = gallopLeft(fromWorkspace, a, b, bHigh);
+                        System.arraycopy(src, b, dst, dest, end - b);
+                        dest += end - b;
+                        b = end;
+                        bWins = 0;
+                    }
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        int gallopRight(boolean inWorkspace, int keyAt, int from, int to) {
+            double[] a = inWorkspace ? workspace : array;
+            double key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && Double.compare(a[hi], key) <= 0) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.compare(a[mid], key) <= 0) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int gallopLeft(boolean inWorkspace, int keyAt, int from, int to) {
+            double[] a = inWorkspace ? workspace : array;
+            double key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && Double.compare(key, a[hi]) > 0) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.compare(key, a[mid]) > 0) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int coRank(boolean inWorkspace, int k, int aLow, int aHigh, int bLow, int bHigh) {
+            double[] a = inWorkspace ? workspace : array;
+            int lo = Math.max(0, k - (bHigh - bLow)), hi = Math.min(k, aHigh - aLow);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1;
+                if (Double.compare(a[aLow + i], a[bLow + k - i - 1]) <= 0) { lo = i + 1; } else { hi = i; }
+            }
+            return aLow + lo;
+        }
+
+        @Override
+        boolean inOrder(boolean inWorkspace, int mid) {
+            double[] a = inWorkspace ? workspace : array;
+            return Double.compare(a[mid], a[mid + 1]) <= 0;
+        }
+
+        @Override
+        int runEnd(int low, int high) {
+            int end = low + 1;
+            if (end == high) { return end; }
+            if (Double.compare(array[low], array[end]) > 0) {
+                while (end + 1 < high && Double.compare(array[end], array[end + 1]) > 0) { end++; }
+                end++;
+                for (int i = low, j = end - 1; i < j; i++, j--) {
+                    double tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                }
+            } else {
+                while (end + 1 < high && Double.compare(array[end], array[end + 1]) <= 0) { end++; }
+                end++;
+            }
+            return end;
+        }
+
+        @Override
+        void copy(boolean fromWorkspace, int from, int to) {
+            if (fromWorkspace) {
+                System.arraycopy(workspace, from, array, from, to - from);
+            } else {
+                System.arraycopy(array, from, workspace, from, to - from);
+            }
+        }
+    }
+
+    private static final class ObjectKernel<T> extends Kernel {
+        private final T[] array;
+        private final T[] workspace;
+        private final Comparator<? super T> comparator;
+
+        ObjectKernel(T[] array, T[] workspace, Comparator<? super T> comparator) {
+            this.array = array;
+            this.workspace = workspace;
+            this.comparator = comparator;
+        }
+
+        @Override
+        void insertionSort(boolean inWorkspace, int low, int high) {
+            T[] a = inWorkspace ? workspace : array;
+            for (int i = low + 1; i <= high; i++) {
+                T key = a[i];
+                int j = i;
+                while (j > low && comparator.compare(a[j - 1], key) > 0) {
+                    a[j] = a[j - 1];
+                    j--;
+                }
+                a[j] = key;
+            }
+        }
+
+        @Override
+        void mergeRange(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            T[] src = fromWorkspace ? workspace : array;
+            T[] dst = fromWorkspace ? array : workspace;
+            int a = aLow;
+            int b = bLow;
+            while (a < aHigh && b < bHigh) {
+                if (comparator.compare(src[a], src[b]) <= 0) {
+                    dst[dest++] = src[a++];
+                } else {
+                    dst[dest++] = src[b++];
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        void gallopMerge(boolean fromWorkspace, int aLow, int aHigh, int bLow, int bHigh, int dest) {
+            T[] src = fromWorkspace ? workspace : array;
+            T[] dst = fromWorkspace ? array : workspace;
+            int a = aLow, b = bLow;
+            int aWins = 0, bWins = 0;
+            while (a < aHigh && b < bHigh) {
+                if (comparator.compare(src[a], src[b]) <= 0) {
+                    dst[dest++] = src[a++];
+                    bWins = 0;
+                    if (++aWins == MIN_GALLOP) {
+                        int end = gallopRight(fromWorkspace, b, a, aHigh);
+                        System.arraycopy(src, a, dst, dest, end - a);
+                        dest += end - a;
+                        a = end;
+                        aWins = 0;
+                    }
+                } else {
+                    dst[dest++] = src[b++];
+                    aWins = 0;
+                    if (++bWins == MIN_GALLOP) {
+                        int end = gallopLeft(fromWorkspace, a, b, bHigh);
+                        System.arraycopy(src, b, dst, dest, end - b);
+                        dest += end - b;
+                        b = end;
+                        bWins = 0;
+                    }
+                }
+            }
+            System.arraycopy(src, a, dst, dest, aHigh - a);
+            System.arraycopy(src, b, dst, dest + (aHigh - a), bHigh - b);
+        }
+
+        @Override
+        int gallopRight(boolean inWorkspace, int keyAt, int from, int to) {
+            T[] a = inWorkspace ? workspace : array;
+            T key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && comparator.compare(a[hi], key) <= 0) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comparator.compare(a[mid], key) <= 0) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int gallopLeft(boolean inWorkspace, int keyAt, int from, int to) {
+            T[] a = inWorkspace ? workspace : array;
+            T key = a[keyAt];
+            int lo = from, hi = from, step = 1;
+            while (hi < to && comparator.compare(key, a[hi]) > 0) {
+                lo = hi + 1;
+                hi = lo + step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, to);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comparator.compare(key, a[mid]) > 0) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        @Override
+        int coRank(boolean inWorkspace, int k, int aLow, int aHigh, int bLow, int bHigh) {
+            T[] a = inWorkspace ? workspace : array;
+            int lo = Math.max(0, k - (bHigh - bLow)), hi = Math.min(k, aHigh - aLow);
+            while (lo < hi) {
+                int i = (lo + hi) >>> 1;
+                if (comparator.compare(a[aLow + i], a[bLow + k - i - 1]) <= 0) { lo = i + 1; } else { hi = i; }
+            }
+            return aLow + lo;
+        }
+
+        @Override
+        boolean inOrder(boolean inWorkspace, int mid) {
+            T[] a = inWorkspace ? workspace : array;
+            return comparator.compare(a[mid], a[mid + 1]) <= 0;
+        }
+
+        @Override
+        int runEnd(int low, int high) {
+            int end = low + 1;
+            if (end == high) { return end; }
+            if (comparator.compare(array[low], array[end]) > 0) {
+                while (end + 1 < high && comparator.compare(array[end], array[end + 1]) > 0) { end++; }
+                end++;
+                for (int i = low, j = end - 1; i < j; i++, j--) {
+                    T tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                }
+            } else {
+                while (end + 1 < high && comparator.compare(array[end], array[end + 1]) <= 0) { end++; }
+                end++;
+            }
+            return end;
+        }
+
+        @Override
+        void copy(boolean fromWorkspace, int from, int to) {
+            if (fromWorkspace) {
+                System.arraycopy(workspace, from, array, from, to - from);
+            } else {
+                System.arraycopy(array, from, workspace, from, to - from);
             }
-            array[j] = key;
         }
     }
 
@@ -173,6 +1319,124 @@ public class FJMergeSort extends RecursiveAction {
     // Main — demonstrate and benchmark the parallel merge sort.
     // -----------------------------------------------------------------------
 
+    /** A record type to sort by its key, to check that equal keys keep their order. */
+    private record Reading(int sensor, long timestamp) {}
+
+    /** Run the sort and return how long it took, in milliseconds. */
+    private static double timeMillis(Runnable sort) {
+        long start = System.nanoTime();
+        sort.run();
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    /**
+     * Sort the same data in pools of 1, 2, 4, ..., 64 threads, and print the
+     * speedup of each over the single thread.
+     */
+    private static void speedupCurve(int[] original) {
+        System.out.printf("%nSpeedup curve, %d cores available:%n", Runtime.getRuntime().availableProcessors());
+        double oneThread = 0;
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            int[] data = original.clone();
+            double time;
+            try (var pool = new ForkJoinPool(threads)) {
+                time = timeMillis(() -> pool.invoke(new FJMergeSort(data)));
+            }
+            if (threads == 1) { oneThread = time; }
+            System.out.printf("  %2d threads: %9.3f ms, speedup %5.2f%n", threads, time, oneThread / time);
+        }
+    }
+
+    /**
+     * Calibrate the thresholds for the common pool, print the report, and
+     * compare the calibrated thresholds to the defaults on the same data.
+     */
+    private static void calibratedThresholds(int[] original) {
+        var pool = ForkJoinPool.commonPool();
+        System.out.println();
+        double calibrationTime = timeMillis(() -> calibration(pool));
+        var calibration = calibration(pool);
+        System.out.print(calibration);
+        System.out.printf("  (calibration took %.0f ms, and is cached from now on)%n", calibrationTime);
+        int[] withDefaults = original.clone(), withCalibrated = original.clone();
+        double defaultTime = timeMillis(() -> pool.invoke(new FJMergeSort(withDefaults)));
+        double calibratedTime = timeMillis(() -> pool.invoke(
+                new FJMergeSort(withCalibrated).withThresholds(calibration.thresholds())));
+        System.out.printf("  Default thresholds %8.3f ms, calibrated thresholds %8.3f ms, same: %s%n",
+                defaultTime, calibratedTime, Arrays.equals(withDefaults, withCalibrated));
+    }
+
+    /**
+     * Compare the normal and adaptive modes on random data and on several kinds
+     * of data that already contain long runs.
+     */
+    private static void adaptiveMode(Random rng, int size) {
+        System.out.printf("%nNormal and adaptive mode, %,d integers:%n", size);
+        int[] random = rng.ints(size).toArray();
+        int[] sorted = random.clone();
+        Arrays.sort(sorted);
+        int[] merged = random.clone(); // sixteen sorted files, concatenated
+        for (int r = 0; r < 16; r++) { Arrays.sort(merged, r * (size / 16), (r + 1) * (size / 16)); }
+        int[] swapped = sorted.clone(); // a sorted file with some of its elements out of place
+        for (int i = 0; i < size / 1000; i++) {
+            int a = rng.nextInt(size), b = rng.nextInt(size);
+            int tmp = swapped[a];
+            swapped[a] = swapped[b];
+            swapped[b] = tmp;
+        }
+        int[] reversed = new int[size];
+        for (int i = 0; i < size; i++) { reversed[i] = sorted[size - 1 - i]; }
+
+        String[] names = {"random", "16 sorted runs", "0.1% swapped", "reversed"};
+        int[][] inputs = {random, merged, swapped, reversed};
+        var pool = ForkJoinPool.commonPool();
+        for (int i = 0; i < inputs.length; i++) {
+            int[] normal = inputs[i].clone(), adaptive = inputs[i].clone(), jdk = inputs[i].clone();
+            double normalTime = timeMillis(() -> pool.invoke(new FJMergeSort(normal)));
+            double adaptiveTime = timeMillis(() -> pool.invoke(new FJMergeSort(adaptive).adaptive()));
+            double jdkTime = timeMillis(() -> Arrays.parallelSort(jdk));
+            System.out.printf("  %-15s normal %8.3f ms, adaptive %8.3f ms, Arrays.parallelSort %8.3f ms, same: %s%n",
+                    names[i] + ":", normalTime, adaptiveTime, jdkTime,
+                    Arrays.equals(normal, sorted) && Arrays.equals(adaptive, sorted) && Arrays.equals(jdk, sorted));
+        }
+    }
+
+    /** Benchmark the other element types against Arrays.parallelSort. */
+    private static void otherElementTypes(Random rng, int size) {
+        System.out.printf("%nOther element types, %,d elements each:%n", size);
+        var pool = ForkJoinPool.commonPool();
+
+        long[] longs = rng.longs(size).toArray();
+        long[] longsFJ = longs.clone();
+        double fjTime = timeMillis(() -> pool.invoke(new FJMergeSort(longsFJ)));
+        double psTime = timeMillis(() -> Arrays.parallelSort(longs));
+        System.out.printf("  long[]:     FJ merge sort %8.3f ms, Arrays.parallelSort %8.3f ms, same: %s%n",
+                fjTime, psTime, Arrays.equals(longs, longsFJ));
+
+        // Throw in some of the values that the operator < gets wrong.
+        double[] doubles = rng.doubles(size, -1, 1).toArray();
+        double[] specials = {Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        for (int i = 0; i < size / 100; i++) {
+            doubles[rng.nextInt(size)] = specials[rng.nextInt(specials.length)];
+        }
+        double[] doublesFJ = doubles.clone();
+        fjTime = timeMillis(() -> pool.invoke(new FJMergeSort(doublesFJ)));
+        psTime = timeMillis(() -> Arrays.parallelSort(doubles));
+        System.out.printf("  double[]:   FJ merge sort %8.3f ms, Arrays.parallelSort %8.3f ms, same: %s%n",
+                fjTime, psTime, Arrays.equals(doubles, doublesFJ));
+
+        // Many readings share each sensor, so a stable sort by sensor keeps
+        // the readings of each sensor in the order of their timestamps.
+        Reading[] readings = new Reading[size];
+        for (int i = 0; i < size; i++) { readings[i] = new Reading(rng.nextInt(1000), i); }
+        Reading[] readingsFJ = readings.clone();
+        Comparator<Reading> bySensor = Comparator.comparingInt(Reading::sensor);
+        fjTime = timeMillis(() -> pool.invoke(new FJMergeSort(readingsFJ, bySensor)));
+        psTime = timeMillis(() -> Arrays.parallelSort(readings, bySensor));
+        System.out.printf("  Reading[]:  FJ merge sort %8.3f ms, Arrays.parallelSort %8.3f ms, same: %s%n",
+                fjTime, psTime, Arrays.equals(readings, readingsFJ));
+    }
+
     public static void main(String[] args) {
         var rng = new Random(42);
         int size = 10_000_000;
@@ -205,10 +1469,47 @@ public class FJMergeSort extends RecursiveAction {
         long seqTime = System.nanoTime() - start;
         System.out.printf("  Time: %.3f ms%n", seqTime / 1_000_000.0);
 
+        // --- Parallel radix sort, which never compares two keys ---
+        int[] forRadixSort = original.clone();
+        System.out.println("\nParallelRadixSort (LSD, 11-bit digits):");
+        start = System.nanoTime();
+        ForkJoinPool.commonPool().invoke(new ParallelRadixSort(forRadixSort));
+        long radixTime = System.nanoTime() - start;
+        System.out.printf("  Time: %.3f ms%n", radixTime / 1_000_000.0);
+
+        // --- Let the selector choose between radix sort and merge sort ---
+        int[] forChosenSort = original.clone();
+        start = System.nanoTime();
+        var chosen = ParallelRadixSort.chooseFor(forChosenSort);
+        ForkJoinPool.commonPool().invoke(chosen);
+        long chosenTime = System.nanoTime() - start;
+        System.out.printf("%nAutomatically chosen %s:%n  Time: %.3f ms%n",
+                chosen.getClass().getSimpleName(), chosenTime / 1_000_000.0);
+
         // --- Verify correctness ---
         boolean correct = Arrays.equals(forForkJoin, forSequentialSort)
-                && Arrays.equals(forParallelSort, forSequentialSort);
-        System.out.printf("%nAll three produce identical results: %s%n", correct);
+                && Arrays.equals(forParallelSort, forSequentialSort)
+                && Arrays.equals(forRadixSort, forSequentialSort)
+                && Arrays.equals(forChosenSort, forSequentialSort);
+        System.out.printf("%nAll five produce identical results: %s%n", correct);
+
+        // --- Sorting again the already sorted result needs no merges at all ---
+        System.out.printf("%nParallel FJ merge sort of already sorted data:%n");
+        double sortedTime = timeMillis(() -> ForkJoinPool.commonPool().invoke(new FJMergeSort(forForkJoin)));
+        System.out.printf("  Time: %.3f ms, still sorted: %s%n", sortedTime,
+                Arrays.equals(forForkJoin, forSequentialSort));
+
+        // --- How the sort scales with the number of threads ---
+        speedupCurve(original);
+
+        // --- Thresholds measured for this machine instead of guessed ---
+        calibratedThresholds(original);
+
+        // --- The adaptive mode on data that is already partly sorted ---
+        adaptiveMode(rng, size);
+
+        // --- The same sort for long, double and object arrays ---
+        otherElementTypes(rng, size);
 
         // --- Small example for visual verification ---
         System.out.println("\nSmall example (20 elements):");
@@ -217,4 +1518,4 @@ public class FJMergeSort extends RecursiveAction {
         ForkJoinPool.commonPool().invoke(new FJMergeSort(small));
         System.out.println("After:  " + Arrays.toString(small));
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -14,10 +19,27 @@ import java.util.stream.StreamSupport;
  * <p>
  * The sequence begins: 1, 2, 3, 4, 5, 6, 8, 9, 10, 12, 15, 16, 18, 20, ...
  * <p>
- * The implementation maintains a priority queue frontier: each time a Hamming
- * number is yielded, its multiples by 2, 3, and 5 are added to the frontier
- * (if not already present). The smallest frontier element is always the next
- * Hamming number — a neat application of best-first search.
+ * The implementation is Dijkstra's classic <em>three-pointer</em> algorithm.
+ * Every Hamming number after 1 is 2, 3 or 5 times some smaller Hamming number,
+ * so the generator keeps the numbers produced so far in a buffer, with three
+ * pointers into it: the next Hamming number is the smallest of {@code 2*h[i2]},
+ * {@code 3*h[i3]} and {@code 5*h[i5]}, after which each pointer whose product
+ * was used moves forward by one, so that the same number is never produced
+ * twice. The pointers only ever move forward, so the buffer only needs to keep
+ * the numbers from the laggard pointer {@code i5} onward.
+ * <p>
+ * The numbers are computed in primitive {@code long} arithmetic for as long as
+ * the products cannot overflow, and only then does the generator switch over to
+ * {@link BigInteger} for the rest of the infinite sequence.
+ * <p>
+ * For comparison, the class also contains the original {@link FrontierIterator}
+ * that maintains a priority queue frontier: each time a Hamming number is
+ * yielded, its multiples by 2, 3, and 5 are added to the frontier (if not
+ * already present). The smallest frontier element is always the next Hamming
+ * number — a neat application of best-first search, but with several object
+ * allocations and logarithmic heap operations for each number. Its trimmed mode
+ * generates each number from one parent only, which keeps the frontier a small
+ * moving window without any duplicate detection.
  * <p>
  * Implementing {@link Iterable} means you can use this class in a for-each
  * loop, and {@link #stream()} provides access to the full power of the
@@ -40,11 +62,9 @@ import java.util.stream.StreamSupport;
 public class HammingNumbers implements Iterable<BigInteger> {
 
     // The three prime factors that define Hamming numbers.
-    private static final List<BigInteger> FACTORS = List.of(
-            BigInteger.valueOf(2),
-            BigInteger.valueOf(3),
-            BigInteger.valueOf(5)
-    );
+    private static final BigInteger THREE = BigInteger.valueOf(3);
+    private static final BigInteger FIVE = BigInteger.valueOf(5);
+    private static final List<BigInteger> FACTORS = List.of(BigInteger.TWO, THREE, FIVE);
 
     // -----------------------------------------------------------------------
     // Iterable implementation — each call to iterator() produces a fresh,
@@ -53,7 +73,7 @@ public class HammingNumbers implements Iterable<BigInteger> {
 
     @Override
     public Iterator<BigInteger> iterator() {
-        return new HammingIterator();
+        return new ThreePointerIterator();
     }
 
     /**
@@ -68,21 +88,189 @@ public class HammingNumbers implements Iterable<BigInteger> {
         return StreamSupport.stream(spliterator(), false);
     }
 
+    /**
+     * Return a finite {@link Stream} of the Hamming numbers whose 1-based indices
+     * are in {@code [fromIndex, toIndex)}. Unlike {@link #stream()}, this stream
+     * knows its exact size and splits evenly, so that {@code .parallel()} divides
+     * the work between all the cores.
+     *
+     * @param fromIndex the index of the first number, at least 1
+     * @param toIndex the index after the last number
+     * @return a stream of those Hamming numbers in ascending order
+     * @throws IllegalArgumentException if the indices are out of order or less than 1
+     */
+    public Stream<BigInteger> stream(long fromIndex, long toIndex) {
+        if (fromIndex < 1 || toIndex < fromIndex) {
+            throw new IllegalArgumentException("Invalid index range: [" + fromIndex + ", " + toIndex + ")");
+        }
+        return StreamSupport.stream(new RangeSpliterator(fromIndex, toIndex), false);
+    }
+
+    /**
+     * Return a finite, evenly splitting {@link Stream} of the Hamming numbers
+     * that are less than {@code bound}.
+     *
+     * @param bound the exclusive upper bound of the numbers
+     * @return a stream of those Hamming numbers in ascending order
+     */
+    public Stream<BigInteger> streamBelow(BigInteger bound) {
+        return stream(1, countLessThan(bound) + 1);
+    }
+
     // -----------------------------------------------------------------------
-    // The iterator itself — maintains the priority queue frontier.
+    // The three-pointer iterator, first with longs, then with BigIntegers.
     // -----------------------------------------------------------------------
 
-    private static class HammingIterator implements Iterator<BigInteger> {
+    private static class ThreePointerIterator implements Iterator<BigInteger> {
+
+        // The long phase: the buffer of numbers from the laggard pointer on,
+        // the three pointers into it, and the three candidate products.
+        private long[] smallBuffer = new long[256];
+        private int smallSize = 1;
+        private int s2, s3, s5;
+        private long c2 = 2, c3 = 3, c5 = 5;
+
+        // The BigInteger phase, entered once the long products would overflow.
+        private BigInteger[] bigBuffer;
+        private int bigSize;
+        private int b2, b3, b5;
+        private BigInteger d2, d3, d5;
+
+        private boolean first = true;
+
+        ThreePointerIterator() {
+            smallBuffer[0] = 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true; // The Hamming sequence is infinite.
+        }
+
+        @Override
+        public BigInteger next() {
+            if (first) {
+                first = false;
+                return BigInteger.ONE;
+            }
+            if (bigBuffer == null) {
+                // Each candidate is recomputed from its pointer only when it is used,
+                // so the overflow check is needed only for those recomputations.
+                long next = Math.min(c2, Math.min(c3, c5));
+                if (smallSize == smallBuffer.length) { compactSmall(); }
+                smallBuffer[smallSize++] = next;
+                if (c2 == next) { long h = smallBuffer[++s2]; c2 = (h <= Long.MAX_VALUE / 2) ? 2 * h : -1; }
+                if (c3 == next) { long h = smallBuffer[++s3]; c3 = (h <= Long.MAX_VALUE / 3) ? 3 * h : -1; }
+                if (c5 == next) { long h = smallBuffer[++s5]; c5 = (h <= Long.MAX_VALUE / 5) ? 5 * h : -1; }
+                if (c2 < 0 || c3 < 0 || c5 < 0) { switchToBig(); }
+                return BigInteger.valueOf(next);
+            }
+            BigInteger next = d2.min(d3).min(d5);
+            if (bigSize == bigBuffer.length) { compactBig(); }
+            bigBuffer[bigSize++] = next;
+            // BigInteger.equals would also work, but compareTo is faster.
+            if (d2.compareTo(next) == 0) { d2 = bigBuffer[++b2].shiftLeft(1); }
+            if (d3.compareTo(next) == 0) { d3 = bigBuffer[++b3].multiply(THREE); }
+            if (d5.compareTo(next) == 0) { d5 = bigBuffer[++b5].multiply(FIVE); }
+            return next;
+        }
+
+        /**
+         * Make room in the long buffer, by sliding the numbers from the laggard
+         * pointer on to the front if that frees at least half of the buffer,
+         * and otherwise by doubling the buffer.
+         */
+        private void compactSmall() {
+            int low = Math.min(s2, Math.min(s3, s5));
+            if (low >= smallBuffer.length / 2) {
+                System.arraycopy(smallBuffer, low, smallBuffer, 0, smallSize - low);
+                smallSize -= low; s2 -= low; s3 -= low; s5 -= low;
+            } else {
+                smallBuffer = Arrays.copyOf(smallBuffer, 2 * smallBuffer.length);
+            }
+        }
+
+        /** Same as {@link #compactSmall}, but for the BigInteger buffer. */
+        private void compactBig() {
+            int low = Math.min(b2, Math.min(b3, b5));
+            if (low >= bigBuffer.length / 2) {
+                System.arraycopy(bigBuffer, low, bigBuffer, 0, bigSize - low);
+                Arrays.fill(bigBuffer, bigSize - low, bigSize, null); // let them be collected
+                bigSize -= low; b2 -= low; b3 -= low; b5 -= low;
+            } else {
+                bigBuffer = Arrays.copyOf(bigBuffer, 2 * bigBuffer.length);
+            }
+        }
+
+        /**
+         * Continue the same algorithm with BigIntegers, converting the part of
+         * the long buffer that the pointers can still reach.
+         */
+        private void switchToBig() {
+            int low = Math.min(s2, Math.min(s3, s5));
+            bigSize = smallSize - low;
+            bigBuffer = new BigInteger[Math.max(256, 2 * bigSize)];
+            for (int i = 0; i < bigSize; i++) {
+                bigBuffer[i] = BigInteger.valueOf(smallBuffer[low + i]);
+            }
+            b2 = s2 - low; b3 = s3 - low; b5 = s5 - low;
+            d2 = bigBuffer[b2].shiftLeft(1);
+            d3 = bigBuffer[b3].multiply(THREE);
+            d5 = bigBuffer[b5].multiply(FIVE);
+            smallBuffer = null;
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // The original iterator — maintains the priority queue frontier.
+    // -----------------------------------------------------------------------
+
+    /**
+     * The original best-first iterator that maintains a priority queue frontier
+     * of candidate Hamming numbers, in two modes.
+     * <p>
+     * In the original mode, each yielded number {@code h} adds all three of
+     * {@code 2h}, {@code 3h} and {@code 5h} to the frontier, with a hash set to
+     * keep out the duplicates. The frontier then holds every candidate up to
+     * {@code 5h}, and the hash set doubles that memory.
+     * <p>
+     * In the <em>trimmed</em> mode, every Hamming number {@code 2^i 3^j 5^k} is
+     * produced from exactly one parent: the number with one fewer 2 if {@code i > 0},
+     * otherwise the one with one fewer 3 if {@code j > 0}, and otherwise the one
+     * with one fewer 5. So {@code h} adds {@code 2h} always, {@code 3h} only when
+     * {@code h} is odd, and {@code 5h} only when {@code h} is a power of five. No
+     * duplicates are ever generated, so the hash set is gone, and since all but
+     * a handful of the candidates are of the form {@code 2h}, the frontier only
+     * holds a moving window of the numbers up to about twice the current one.
+     * Both modes keep the frontier at the order of {@code n^(2/3)} numbers after
+     * {@code n} steps, but the trimmed mode has far fewer of them.
+     */
+    public static final class FrontierIterator implements Iterator<BigInteger> {
 
         // The search frontier, ordered by natural ordering of BigInteger.
         private final PriorityQueue<BigInteger> frontierQueue = new PriorityQueue<>();
-        // A parallel set for O(1) duplicate detection.
-        private final HashSet<BigInteger> frontierSet = new HashSet<>();
+        // A parallel set for O(1) duplicate detection, only in the original mode.
+        private final HashSet<BigInteger> frontierSet;
+        // The smallest power of five that has not been yielded yet, in the trimmed mode.
+        private BigInteger nextPowerOfFive = BigInteger.ONE;
+
+        private int peakFrontierSize = 1;
+
+        /** Create an iterator in the original mode. */
+        public FrontierIterator() {
+            this(false);
+        }
 
-        HammingIterator() {
+        /**
+         * Create an iterator in the chosen mode.
+         *
+         * @param trimmed whether to generate each number from only one parent
+         */
+        public FrontierIterator(boolean trimmed) {
+            frontierSet = trimmed ? null : new HashSet<>();
             // Seed the frontier with 1, the first Hamming number.
             frontierQueue.add(BigInteger.ONE);
-            frontierSet.add(BigInteger.ONE);
+            if (frontierSet != null) { frontierSet.add(BigInteger.ONE); }
         }
 
         /**
@@ -108,44 +296,392 @@ public class HammingNumbers implements Iterable<BigInteger> {
 
             // Pop the smallest element — this is the next Hamming number.
             BigInteger current = frontierQueue.poll();
-            frontierSet.remove(current);
-
-            // Expand: multiply by each factor and add to the frontier if new.
-            for (BigInteger factor : FACTORS) {
-                BigInteger candidate = current.multiply(factor);
-                if (frontierSet.add(candidate)) {
-                    // Set.add returns true if the element was not already present.
-                    frontierQueue.add(candidate);
+
+            if (frontierSet != null) {
+                frontierSet.remove(current);
+                // Expand: multiply by each factor and add to the frontier if new.
+                for (BigInteger factor : FACTORS) {
+                    BigInteger candidate = current.multiply(factor);
+                    if (frontierSet.add(candidate)) {
+                        // Set.add returns true if the element was not already present.
+                        frontierQueue.add(candidate);
+                    }
+                }
+            } else {
+                // Expand only along the edges of the unique parent tree.
+                frontierQueue.add(current.shiftLeft(1));
+                if (current.testBit(0)) { // odd, so h = 3^j 5^k
+                    frontierQueue.add(current.multiply(THREE));
+                    if (current.equals(nextPowerOfFive)) {
+                        nextPowerOfFive = current.multiply(FIVE);
+                        frontierQueue.add(nextPowerOfFive);
+                    }
                 }
             }
+            peakFrontierSize = Math.max(peakFrontierSize, frontierQueue.size());
 
             return current;
         }
+
+        /** Return whether this iterator runs in the trimmed mode. */
+        public boolean isTrimmed() { return frontierSet == null; }
+
+        /** Return the number of candidates currently in the frontier. */
+        public int frontierSize() { return frontierQueue.size(); }
+
+        /** Return the largest number of candidates that the frontier has held at any time. */
+        public int peakFrontierSize() { return peakFrontierSize; }
     }
 
     // -----------------------------------------------------------------------
-    // Convenience: compute the n-th Hamming number (1-indexed).
+    // Compute the n-th Hamming number directly (1-indexed).
+    //
+    // Every Hamming number 2^i * 3^j * 5^k is a point (i, j, k) of the integer
+    // lattice, and its base-two logarithm i + j*lg3 + k*lg5 is a linear function
+    // of that point. So the number of Hamming numbers below 2^x is the number of
+    // lattice points under the plane i + j*lg3 + k*lg5 = x, which can be counted
+    // quickly with a loop over (j, k) that counts all the possible i at once.
+    // The volume of that tetrahedron gives an accurate estimate of where the n-th
+    // number lies, after which it is enough to count the points under a thin band
+    // around that estimate, and sort the points inside the band.
     // -----------------------------------------------------------------------
 
+    private static final double LG3 = Math.log(3) / Math.log(2);
+    private static final double LG5 = Math.log(5) / Math.log(2);
+
+    /** The lattice point of a Hamming number, and its base-two logarithm. */
+    private record Point(int i, int j, int k, double log) {
+        BigInteger value() {
+            return BigInteger.ONE.shiftLeft(i).multiply(THREE.pow(j)).multiply(FIVE.pow(k));
+        }
+    }
+
+    /**
+     * Return the number of Hamming numbers whose base-two logarithm is less than
+     * {@code bound}, in time proportional to {@code bound^2}. For each (j, k),
+     * the exponents i with {@code i + j*lg3 + k*lg5 < bound} are exactly the
+     * {@code ceil(rem)} integers {@code 0 <= i < rem}, where rem is what remains
+     * of the bound.
+     */
+    static long countBelow(double bound) {
+        long count = 0;
+        for (int k = 0; k * LG5 < bound; k++) {
+            double remK = bound - k * LG5;
+            for (int j = 0; j * LG3 < remK; j++) {
+                count += (long) Math.ceil(remK - j * LG3);
+            }
+        }
+        return count;
+    }
+
+    /** Points whose logarithms are closer than this might be in the wrong order. */
+    private static final double TIE_EPS = 1e-9;
+
+    /** Estimate the base-two logarithm of the n-th Hamming number, from the volume under the plane. */
+    private static double estimateLog(long n) {
+        // The volume estimate, with a correction for the points on the faces.
+        return Math.cbrt(6 * LG3 * LG5 * n) - (1 + LG3 + LG5) / 2;
+    }
+
+    /** Return the approximate number of Hamming numbers per unit of logarithm around x. */
+    private static double density(double x) {
+        return x * x / (2 * LG3 * LG5) + 1;
+    }
+
+    /**
+     * Return the points whose logarithms are in {@code [low, high)}. The bounds
+     * of each run of i are computed exactly the same way as in countBelow, so
+     * the points are precisely the ones counted below high but not below low,
+     * and consecutive bands never miss or repeat any point.
+     */
+    private static ArrayList<Point> band(double low, double high) {
+        var band = new ArrayList<Point>();
+        for (int k = 0; k * LG5 < high; k++) {
+            double lowK = low - k * LG5, highK = high - k * LG5;
+            for (int j = 0; j * LG3 < highK; j++) {
+                double lowRem = lowK - j * LG3;
+                int first = (lowRem > 0) ? (int) Math.ceil(lowRem) : 0;
+                int end = (int) Math.ceil(highK - j * LG3);
+                for (int i = first; i < end; i++) {
+                    band.add(new Point(i, j, k, i + j * LG3 + k * LG5));
+                }
+            }
+        }
+        return band;
+    }
+
+    /**
+     * Sort the points of a band in ascending order of their values. Points whose
+     * logarithms are within rounding error of each other might be in the wrong
+     * order, so those few are then sorted by their exact values.
+     */
+    private static void sortExactly(List<Point> band) {
+        band.sort(Comparator.comparingDouble(Point::log));
+        int from = 0;
+        while (from < band.size()) {
+            int to = from + 1;
+            while (to < band.size() && band.get(to).log() - band.get(to - 1).log() < TIE_EPS) { to++; }
+            if (to - from > 1) {
+                band.subList(from, to).sort(Comparator.comparing(Point::value));
+            }
+            from = to;
+        }
+    }
+
     /**
      * Return the {@code n}-th Hamming number (1-indexed), so
      * {@code nth(1) = 1}, {@code nth(2) = 2}, {@code nth(6) = 6}, etc.
+     * <p>
+     * Instead of generating all the numbers before it, this counts lattice points
+     * under a logarithmic bound, so {@code n} can go up to about 10^12 and beyond,
+     * in time roughly proportional to {@code n^(2/3)}.
      *
      * @param n the 1-based index
      * @return the n-th Hamming number
      * @throws IllegalArgumentException if n is less than 1
      */
-    public BigInteger nth(int n) {
+    public BigInteger nth(long n) {
         if (n < 1) {
             throw new IllegalArgumentException("Index must be >= 1, got: " + n);
         }
-        return stream().skip(n - 1).findFirst().orElseThrow();
+        double estimate = estimateLog(n);
+        // Make the band wide enough to hold about 100,000 points, which is
+        // plenty to cover the error of the estimate for large n.
+        double width = Math.min(50_000 / density(estimate), 1 + Math.abs(estimate));
+        double low = estimate - width, high = estimate + width;
+        long countLow;
+        while ((countLow = countBelow(low)) >= n) { low -= width; width *= 2; }
+        while (countBelow(high) < n) { high += width; width *= 2; }
+
+        var band = band(low, high);
+        sortExactly(band);
+        return band.get((int) (n - countLow - 1)).value();
+    }
+
+    /**
+     * Return the number of Hamming numbers that are less than {@code bound}, that
+     * is, the index of the last one of them. The logarithm of the bound decides
+     * all but the points right next to it, which are compared exactly.
+     *
+     * @param bound the exclusive upper bound
+     * @return how many Hamming numbers are less than the bound
+     */
+    public long countLessThan(BigInteger bound) {
+        if (bound.signum() <= 0) { return 0; }
+        int shift = Math.max(0, bound.bitLength() - 54);
+        double log = shift + Math.log(bound.shiftRight(shift).doubleValue()) / Math.log(2);
+        double margin = 1e-6;
+        long count = countBelow(log - margin);
+        for (Point p : band(log - margin, log + margin)) {
+            if (p.value().compareTo(bound) < 0) { count++; }
+        }
+        return count;
+    }
+
+    // -----------------------------------------------------------------------
+    // A spliterator over a range of indices, for parallel streams. It splits its
+    // range in half by index, which nth() makes possible without generating the
+    // numbers before it. Each half then finds where it starts with countBelow,
+    // and walks through its numbers one band of lattice points at a time.
+    // -----------------------------------------------------------------------
+
+    private static final class RangeSpliterator implements Spliterator<BigInteger> {
+
+        /** Ranges shorter than this are not worth splitting any further. */
+        private static final long MIN_SPLIT = 1 << 13;
+        /** About how many points to put in each band during the traversal. */
+        private static final int CHUNK = 1 << 13;
+
+        private long next;          // the index of the next number to yield
+        private final long end;     // the index after the last number
+
+        // The traversal state, created when the traversal begins.
+        private ArrayList<Point> chunk;
+        private int chunkPos;
+        private double chunkHigh;   // the logarithmic bound after the current band
+        private long countHigh;     // the number of Hamming numbers below chunkHigh
+
+        // The powers of 3 and 5 that this spliterator has needed so far.
+        private final ArrayList<BigInteger> powersOfThree = new ArrayList<>(List.of(BigInteger.ONE));
+        private final ArrayList<BigInteger> powersOfFive = new ArrayList<>(List.of(BigInteger.ONE));
+
+        RangeSpliterator(long next, long end) {
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BigInteger> action) {
+            if (next >= end) { return false; }
+            if (chunk == null) { start(); }
+            while (chunkPos == chunk.size()) { nextChunk(); }
+            action.accept(value(chunk.get(chunkPos++)));
+            next++;
+            return true;
+        }
+
+        /** Position the traversal at the index {@code next}. */
+        private void start() {
+            double estimate = estimateLog(next);
+            double width = Math.min(CHUNK / density(estimate), 1 + Math.abs(estimate));
+            double low = estimate - width;
+            long countLow;
+            while ((countLow = countBelow(low)) >= next) { low -= width; width *= 2; }
+            chunkHigh = low;
+            countHigh = countLow;
+            chunk = new ArrayList<>();
+            long skip = next - countLow - 1;
+            nextChunk();
+            while (skip >= chunk.size()) {
+                skip -= chunk.size();
+                nextChunk();
+            }
+            chunkPos = (int) skip;
+        }
+
+        /** Move on to the band of about CHUNK points right after the current one. */
+        private void nextChunk() {
+            double low = chunkHigh;
+            chunkHigh = Math.max(estimateLog(countHigh + CHUNK), low + 1 / density(low));
+            chunk = band(low, chunkHigh);
+            sortExactly(chunk);
+            countHigh += chunk.size();
+            chunkPos = 0;
+        }
+
+        private BigInteger value(Point p) {
+            return power(powersOfThree, THREE, p.j()).multiply(power(powersOfFive, FIVE, p.k())).shiftLeft(p.i());
+        }
+
+        private static BigInteger power(ArrayList<BigInteger> powers, BigInteger base, int e) {
+            while (powers.size() <= e) { powers.add(powers.get(powers.size() - 1).multiply(base)); }
+            return powers.get(e);
+        }
+
+        @Override
+        public Spliterator<BigInteger> trySplit() {
+            if (chunk != null || end - next < 2 * MIN_SPLIT) { return null; }
+            long mid = next + (end - next) / 2;
+            var prefix = new RangeSpliterator(next, mid);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() { return end - next; }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super BigInteger> getComparator() {
+            return null; // natural order
+        }
     }
 
     // -----------------------------------------------------------------------
     // Main — demonstrate various ways to use the iterator.
     // -----------------------------------------------------------------------
 
+    /** Check that nth(n) agrees with the iterator for all n up to the limit. */
+    private static boolean directAgreesWithIterator(int limit) {
+        var hamming = new HammingNumbers();
+        var it = hamming.iterator();
+        for (int n = 1; n <= limit; n++) {
+            BigInteger expected = it.next();
+            // Checking all of them would take a while, so check the first 1,000
+            // and then a sample of the rest.
+            if ((n <= 1000 || n % 997 == 0) && !hamming.nth(n).equals(expected)) {
+                System.out.println("Mismatch at n = " + n);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Time generating the first {@code count} Hamming numbers with the
+     * three-pointer iterator and the priority queue iterator in both of its modes,
+     * and verify that they produce the same last number. The priority queue
+     * iterators are only run when {@code count} is small enough for them to
+     * finish in reasonable time.
+     */
+    private static void benchmark(int count) {
+        System.out.printf("Generating the first %,d Hamming numbers:%n", count);
+        long startTime = System.nanoTime();
+        var threePointer = new ThreePointerIterator();
+        BigInteger last = null;
+        for (int i = 0; i < count; i++) { last = threePointer.next(); }
+        System.out.printf("  three pointers: %,d ms, last one has %d bits%n",
+                (System.nanoTime() - startTime) / 1_000_000, last.bitLength());
+        if (count <= 1_000_000) {
+            for (boolean trimmed : new boolean[] {false, true}) {
+                startTime = System.nanoTime();
+                var frontier = new FrontierIterator(trimmed);
+                BigInteger lastFrontier = null;
+                for (int i = 0; i < count; i++) { lastFrontier = frontier.next(); }
+                System.out.printf("  priority queue%s: %,d ms, peak frontier %,d, same result: %s%n",
+                        trimmed ? " (trimmed)" : "", (System.nanoTime() - startTime) / 1_000_000,
+                        frontier.peakFrontierSize(), last.equals(lastFrontier));
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Print the peak frontier sizes of both modes of the priority queue iterator
+     * after generating {@code n} numbers, next to {@code n^(2/3)}.
+     */
+    private static void frontierGrowth(int limit) {
+        System.out.println("Peak frontier size of the priority queue iterator:");
+        var original = new FrontierIterator(false);
+        var trimmed = new FrontierIterator(true);
+        int generated = 0;
+        for (int n = 1000; n <= limit; n *= 10) {
+            for (; generated < n; generated++) {
+                original.next();
+                trimmed.next();
+            }
+            System.out.printf("  n = %,9d: original %,7d, trimmed %,6d, n^(2/3) = %,6.0f%n", n,
+                    original.peakFrontierSize(), trimmed.peakFrontierSize(), Math.pow(n, 2.0 / 3));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Check that the range streams agree with the iterator, and time a reduction
+     * over a range of indices both sequentially and in parallel.
+     */
+    private static void rangeStreams(long fromIndex, long toIndex) {
+        var hamming = new HammingNumbers();
+        boolean agrees = hamming.stream(1, 200_001).toList()
+                .equals(hamming.stream().limit(200_000).toList());
+        System.out.println("Range stream agrees with the iterator for the first 200,000: " + agrees);
+        BigInteger bound = BigInteger.TEN.pow(30);
+        System.out.printf("There are %,d Hamming numbers below 10^30, and the stream below it has %,d%n",
+                hamming.countLessThan(bound), hamming.streamBelow(bound).count());
+        System.out.println("Hamming numbers from index 10^9 on: "
+                + hamming.stream(1_000_000_000, 1_000_000_003).toList().equals(
+                        List.of(hamming.nth(1_000_000_000), hamming.nth(1_000_000_001), hamming.nth(1_000_000_002))));
+
+        // How many of the numbers in the range are one more than a multiple of 7?
+        System.out.printf("Counting the numbers with index in [%,d, %,d) that are 1 mod 7, %d cores available:%n",
+                fromIndex, toIndex, Runtime.getRuntime().availableProcessors());
+        BigInteger seven = BigInteger.valueOf(7);
+        for (boolean parallel : new boolean[] {false, true}) {
+            long startTime = System.nanoTime();
+            var numbers = hamming.stream(fromIndex, toIndex);
+            long count = (parallel ? numbers.parallel() : numbers)
+                    .filter(h -> h.mod(seven).equals(BigInteger.ONE))
+                    .count();
+            System.out.printf("  %-10s %,d of them, %,d ms%n", parallel ? "parallel:" : "sequential:",
+                    count, (System.nanoTime() - startTime) / 1_000_000);
+        }
+        System.out.println();
+    }
+
     public static void main(String[] args) {
         var hamming = new HammingNumbers();
 
@@ -183,6 +719,29 @@ public class HammingNumbers implements Iterable<BigInteger> {
                 .forEach(h -> System.out.print(h + " "));
         System.out.println("\n");
 
+        // --- Direct computation versus enumeration ---
+        System.out.println("Direct nth() agrees with the iterator for the first 100,000: "
+                + directAgreesWithIterator(100_000));
+        for (long n = 1_000_000; n <= 1_000_000_000_000L; n *= 1000) {
+            startTime = System.currentTimeMillis();
+            BigInteger h = hamming.nth(n);
+            elapsed = System.currentTimeMillis() - startTime;
+            String digits = h.toString();
+            System.out.printf("nth(%,d) has %,d digits, %s...%s (%d ms)%n", n, digits.length(),
+                    digits.substring(0, 10), digits.substring(digits.length() - 10), elapsed);
+        }
+        System.out.println();
+
+        // --- Finite streams that split across cores ---
+        rangeStreams(1_000_000_000, 1_001_000_000);
+
+        // --- Memory use of the priority queue frontier ---
+        frontierGrowth(1_000_000);
+
+        // --- Benchmark both iterators over the same prefix ---
+        benchmark(100_000);
+        benchmark(10_000_000);
+
         // --- Demonstrate that each iterator() call is independent ---
         System.out.println("Two independent iterators:");
         var iter1 = hamming.iterator();
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A read-only {@link BloomFilter} that lives in a file instead of the heap.
+ * The file is written by {@link BloomFilter#save} in the binary format
+ * documented in {@link BloomFilter#writeTo}, and this class <b>memory-maps</b>
+ * it with {@link FileChannel#map} so that queries read the bits directly from
+ * the operating system page cache.
+ * <p>
+ * Opening a filter this way is practically instant regardless of its size,
+ * since nothing is read or copied up front: the operating system loads each
+ * page of the file lazily the first time that a query touches it. As a bonus,
+ * several JVM processes that map the same file all share the same physical
+ * pages of memory, instead of each one keeping its own copy in its heap.
+ * <p>
+ * A single {@link MappedByteBuffer} can span at most {@code Integer.MAX_VALUE}
+ * bytes, so a large filter is mapped as a series of one-gigabyte chunks.
+ *
+ * @param <E> the element type
+ * @author Ilkka Kokkarinen
+ */
+public class MappedBloomFilter<E> {
+
+    /** Each mapped chunk holds this many 64-bit words (2^27 words = 1 GB). */
+    private static final int CHUNK_SHIFT = 27;
+    private static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+
+    private final LongBuffer[] chunks;      // the bit array, in mapped chunks
+    private final BloomFilter.Hashing<E> hashing;
+    private final long elementCount;        // n, as stored in the file header
+
+    /** Map the given file for queries, with the given element hashing. */
+    private MappedBloomFilter(Path file, boolean wide,
+                              ToIntFunction<E> toInt, ToLongFunction<E> toLong) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Read and validate the header.
+            var header = ByteBuffer.allocate(BloomFilter.HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("File too short for a Bloom filter header: " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != BloomFilter.FILE_MAGIC) {
+                throw new IOException("Not a Bloom filter file: " + file);
+            }
+            int version = header.getInt();
+            if (version != BloomFilter.FILE_VERSION) {
+                throw new IOException("Unsupported Bloom filter file version " + version + ": " + file);
+            }
+            boolean fileIsWide = (header.getInt() & 1) != 0;
+            if (fileIsWide != wide) {
+                throw new IllegalArgumentException("File " + file + " was written in the "
+                        + (fileIsWide ? "wide 64-bit" : "classic 32-bit") + " hashing mode");
+            }
+            int k = header.getInt();
+            long m = header.getLong();
+            long seed = header.getLong();
+            elementCount = header.getLong();
+            hashing = new BloomFilter.Hashing<>(k, m, seed, wide, toInt, toLong);
+
+            long wordCount = (m + 63) >>> 6;
+            if (channel.size() < BloomFilter.HEADER_BYTES + 8 * wordCount) {
+                throw new IOException("File too short for " + m + " bits: " + file);
+            }
+
+            // Map the bit array in chunks. The mappings stay valid even after
+            // the channel that created them has been closed.
+            chunks = new LongBuffer[(int) ((wordCount + CHUNK_WORDS - 1) >>> CHUNK_SHIFT)];
+            for (int c = 0; c < chunks.length; c++) {
+                long firstWord = (long) c << CHUNK_SHIFT;
+                long words = Math.min(CHUNK_WORDS, wordCount - firstWord);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        BloomFilter.HEADER_BYTES + 8 * firstWord, 8 * words);
+                chunks[c] = mapped.asLongBuffer(); // big-endian, same as DataOutputStream
+            }
+        }
+    }
+
+    /**
+     * Open a filter file that was written in the classic 32-bit hashing mode.
+     *
+     * @param file  the file written by {@link BloomFilter#save}
+     * @param toInt the same element-to-int conversion that built the filter
+     *              (null for hashCode)
+     * @return the mapped filter
+     * @throws IOException if the file cannot be read or is not a filter file
+     */
+    public static <E> MappedBloomFilter<E> open(Path file, ToIntFunction<E> toInt) throws IOException {
+        return new MappedBloomFilter<>(file, false, toInt, null);
+    }
+
+    /**
+     * Open a filter file that was written in the wide 64-bit hashing mode.
+     *
+     * @param file   the file written by {@link BloomFilter#save}
+     * @param toLong the same element-to-long conversion that built the filter
+     *               (null for hashCode)
+     * @return the mapped filter
+     * @throws IOException if the file cannot be read or is not a filter file
+     */
+    public static <E> MappedBloomFilter<E> openWide(Path file, ToLongFunction<E> toLong) throws IOException {
+        return new MappedBloomFilter<>(file, true, null, toLong);
+    }
+
+    /** Return whether the bit at the given index is 1. */
+    private boolean getBit(long index) {
+        long word = index >>> 6;
+        long bits = chunks[(int) (word >>> CHUNK_SHIFT)].get((int) (word & (CHUNK_WORDS - 1)));
+        return (bits & (1L << index)) != 0;
+    }
+
+    /**
+     * Query whether an element is probably in the filter, with exactly the
+     * same answer that the original {@link BloomFilter} would give.
+     *
+     * @param element the element to look up
+     * @return whether the element is probably present
+     */
+    public boolean probablyContains(E element) {
+        long h1 = hashing.hash1(element);
+        long h2 = hashing.hash2(h1);
+        for (int i = 0; i < hashing.k; i++) {
+            if (!getBit(hashing.bucket(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of elements that had been added when the file was saved. */
+    public long size() { return elementCount; }
+
+    /** Return the number of bits in the filter. */
+    public long bitCount() { return hashing.m; }
+
+    @Override
+    public String toString() {
+        return "MappedBloomFilter[%s, k=%d, m=%,d bits in %d mapped chunk(s), n=%,d, theoretical FP=%.6f]"
+                .formatted(hashing.wide ? "64-bit" : "32-bit", hashing.k, hashing.m, chunks.length,
+                        elementCount, BloomFilter.theoreticalFalsePositiveRate(hashing.k, hashing.m, elementCount));
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — build a filter, save it, and reopen it without loading it.
+    // -----------------------------------------------------------------------
+
+    public static void main(String[] args) throws IOException {
+        int insertCount = 1_000_000;
+        var rng = new Random(42);
+        long[] keys = rng.longs(insertCount).toArray();
+
+        // Build the filter on the heap the usual way. Long keys are their own
+        // 64-bit hashes, so the wide mode suits them perfectly.
+        long start = System.nanoTime();
+        var filter = BloomFilter.<Long>withLongHash(insertCount, 0.001, Long::longValue);
+        for (long key : keys) { filter.add(key); }
+        System.out.printf("Built %s in %.1f ms%n", filter, (System.nanoTime() - start) / 1e6);
+
+        Path file = Files.createTempFile("bloom", ".bin");
+        try {
+            start = System.nanoTime();
+            filter.save(file);
+            System.out.printf("Saved %,d bytes in %.1f ms%n", Files.size(file), (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            var mapped = MappedBloomFilter.<Long>openWide(file, Long::longValue);
+            System.out.printf("Opened %s in %.3f ms%n", mapped, (System.nanoTime() - start) / 1e6);
+
+            // The mapped filter must agree with the heap filter on every query.
+            boolean allFound = true;
+            for (long key : keys) { allFound &= mapped.probablyContains(key); }
+            System.out.println("All inserted keys found in the mapped filter: " + allFound);
+            int disagreements = 0, falsePositives = 0;
+            for (int i = 0; i < insertCount; i++) {
+                long probe = rng.nextLong();
+                boolean answer = mapped.probablyContains(probe);
+                if (answer != filter.probablyContains(probe)) { disagreements++; }
+                if (answer) { falsePositives++; }
+            }
+            System.out.printf("Disagreements with the heap filter: %d%n", disagreements);
+            System.out.printf("Observed FP rate: %.6f%n", (double) falsePositives / insertCount);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
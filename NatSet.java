@@ -1,22 +1,51 @@
-import java.util.BitSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
 
 /**
  * A monotonic set of natural numbers ideal for situations where these
  * numbers tend to be encountered in roughly ascending order, but not
  * strictly so. Many recursive sequences work this way.
  *
- * <p>Modernized for Java 21+: the underlying storage is a {@link BitSet}
- * (1 bit per element) instead of a {@code boolean[]} (1 byte per element),
- * giving an immediate 8× memory improvement. The sliding-window compaction
- * strategy is preserved but operates on the {@code BitSet} via bulk
- * {@code get(fromIndex, toIndex)} sub-range extraction.
+ * <p>The membership data is kept in a sliding window of bits (1 bit per
+ * element) over the natural numbers, to the left of which all numbers are
+ * known to be members. The window is stored as a <em>ring</em> of fixed-size
+ * pages, each page a plain {@code long[]} of 64-bit words. Once the first page
+ * of the window is all ones, compaction merely clears that page and moves the
+ * head index of the ring forward, so that the same page is recycled to serve
+ * as the new last page of the window. Nothing is ever copied, and nothing is
+ * allocated unless the window has to grow to accommodate some element far
+ * ahead of the others.
+ *
+ * <p>Such a far-ahead element is a problem, though: the window must grow
+ * all the way to it, and the memory use becomes proportional to the distance
+ * instead of the actual number of elements. For such usage, the
+ * <em>compressed mode</em> uses the ideas of <em>Roaring bitmaps</em> (Chambi,
+ * Lemire, Kaser and Godin, 2016). The numbers are split into chunks of 2^16,
+ * and each chunk that has any elements is stored in a hash map under its chunk
+ * number, in a <em>container</em> suited for its contents:
+ * <ul>
+ *   <li>an <b>array container</b>, a sorted {@code char[]} of the 16-bit low
+ *       halves of its elements, while the chunk has at most 4096 elements;</li>
+ *   <li>a <b>bitmap container</b> of 2^16 bits in 8 kilobytes, for dense chunks;</li>
+ *   <li>a <b>run container</b>, a sorted array of maximal ranges of consecutive
+ *       elements, for chunks whose elements come in long runs, such as the
+ *       ranges filled in by ascending sequences.</li>
+ * </ul>
+ * Each container converts itself to a more suitable kind as it fills up, so the
+ * memory use stays proportional to the content, while {@code contains} costs one
+ * hash map lookup and at most a short binary search. Compaction discards the
+ * chunk at the start of the window once it is full.
  *
  * @author Ilkka Kokkarinen
  */
 public class NatSet {
 
-    /** Initial capacity of the sliding window, in bits. */
-    private static final int PAGE = 1024; // a round power of two suits BitSet well
+    /** Each page holds 2^16 bits in 1024 words, that is, 8 kilobytes. */
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+    private static final int PAGE_WORDS = PAGE_BITS / 64;
 
     // --- Sliding window state ---
 
@@ -24,25 +53,36 @@ public class NatSet {
     private long start = 0;
 
     /**
-     * Membership data for elements {@code n} satisfying
-     * {@code start <= n < start + capacity}. Bit {@code (n - start)}
-     * is set iff {@code n} has been added.
+     * The pages of the window, whose length is always a power of two. Page
+     * {@code i} of the window is {@code ring[(head + i) % ring.length]}, and
+     * bit {@code (n - start)} of the window is set iff {@code n} has been added,
+     * for elements {@code n} satisfying {@code start <= n < start + capacity}.
      */
-    private BitSet data;
+    private long[][] ring;
+
+    /** Index of the first page of the window in the ring. */
+    private int head = 0;
+
+    /** In the compressed mode, the containers of the nonempty chunks; otherwise null. */
+    private final HashMap<Long, Container> chunks;
 
-    /** Current allocated capacity of the window (in bits). */
-    private int capacity;
+    /**
+     * In the compressed mode, the keys of {@code chunks} in sorted order, for the
+     * range queries. This changes only when a chunk is created or discarded.
+     */
+    private final TreeSet<Long> chunkKeys;
 
     /**
-     * All bits in {@code data} with index strictly less than {@code pos}
+     * All bits in the window with index strictly less than {@code pos}
      * are known to be set. This is the sweep cursor for the compaction check.
      */
-    private int pos = 0;
+    private long pos = 0;
 
     // --- Statistics ---
 
     private long shiftCount = 0;
 
+    /** Return how far the window has slid to the right, in bits. */
     public long getShiftCount() { return shiftCount; }
 
     /**
@@ -51,9 +91,42 @@ public class NatSet {
      */
     public long allTrueUpTo() { return start + pos; }
 
+    /** Create an empty set that stores its window as a ring of pages. */
     public NatSet() {
-        capacity = PAGE;
-        data = new BitSet(capacity);
+        this(false);
+    }
+
+    /**
+     * Create an empty set.
+     *
+     * @param compressed if true, store the window in compressed containers;
+     *                   otherwise, as a ring of uncompressed pages
+     */
+    public NatSet(boolean compressed) {
+        if (compressed) {
+            chunks = new HashMap<>();
+            chunkKeys = new TreeSet<>();
+        } else {
+            chunks = null;
+            chunkKeys = null;
+            ring = new long[1][PAGE_WORDS];
+        }
+    }
+
+    /** Return the approximate number of bytes used to store the window. */
+    public long memoryBytes() {
+        if (chunks == null) { return (long) ring.length * (16 + 8 * PAGE_WORDS); }
+        long total = 48L * chunks.size(); // hash map entry and key overhead
+        for (Container c : chunks.values()) { total += c.memoryBytes(); }
+        return total;
+    }
+
+    /** Return the current capacity of the window, in bits. */
+    private long capacity() { return (long) ring.length << PAGE_SHIFT; }
+
+    /** Return the page that contains the given bit index of the window. */
+    private long[] page(long index) {
+        return ring[(head + (int) (index >>> PAGE_SHIFT)) & (ring.length - 1)];
     }
 
     /**
@@ -65,40 +138,351 @@ public class NatSet {
      */
     public void add(long n) {
         if (n < start) { return; } // already implicitly a member
-
-        // Grow the window capacity if needed.
-        int index = (int) (n - start);
-        if (index >= capacity) {
-            // Grow modestly but at least enough.
-            while (index >= capacity) {
-                capacity += capacity / 4;
-            }
-            // BitSet grows automatically on set(), but we track capacity
-            // ourselves for the compaction threshold calculation.
+        if (chunks != null) {
+            addCompressed(n);
+            return;
         }
 
-        data.set(index);
+        long index = n - start;
+        if (index >= capacity()) { grow(index); }
+        page(index)[(int) (index >>> 6) & (PAGE_WORDS - 1)] |= 1L << index; // shift count is taken mod 64
 
         // The first clear bit can only advance when we fill the exact
         // gap at pos. In all other cases, pos is unchanged.
-        if (index == pos) {
-            pos = data.nextClearBit(pos);
-        }
-
-        // Once the first quarter of the window is all-true, compact.
-        if (pos > capacity / 4) {
-            shiftCount += pos;
-            // Shift the window: extract the sub-range [pos, capacity) as
-            // a new BitSet, then update bookkeeping.
-            data = data.get(pos, Math.max(pos, data.length()));
-            start += pos;
-            capacity -= pos;
-            // Ensure capacity doesn't shrink below PAGE.
-            if (capacity < PAGE) { capacity = PAGE; }
+        if (index == pos) { advance(); }
+    }
+
+    /**
+     * Move {@code pos} forward to the next clear bit of the window, one word
+     * at a time, recycling each page that turns out to be all ones.
+     */
+    private void advance() {
+        while (true) {
+            pos = BitmapContainer.nextClear(ring[head], (int) pos);
+            if (pos < PAGE_BITS) { return; }
+            // The first page of the window is all ones. Clear it and make it
+            // the last page of the window, which was previously out of range.
+            Arrays.fill(ring[head], 0L);
+            head = (head + 1) & (ring.length - 1);
+            start += PAGE_BITS;
             pos = 0;
+            shiftCount += PAGE_BITS;
         }
     }
 
+    /**
+     * Double the ring until the window reaches the given index. The existing
+     * pages are reused in their window order, followed by the new pages.
+     *
+     * @throws IllegalArgumentException if no ring of pages that an array can
+     *         hold reaches that far past the start of the window
+     */
+    private void grow(long index) {
+        int length = ring.length;
+        try {
+            while (((long) length << PAGE_SHIFT) <= index) { length = Math.multiplyExact(length, 2); }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Element is " + index
+                    + " past the start of the window, too far for the ring of pages to reach", e);
+        }
+        var newRing = new long[length][];
+        for (int i = 0; i < ring.length; i++) {
+            newRing[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        for (int i = ring.length; i < length; i++) {
+            newRing[i] = new long[PAGE_WORDS];
+        }
+        ring = newRing;
+        head = 0;
+    }
+
+    // --- The compressed mode ---
+
+    /** Add the element {@code n >= start} into its container in the compressed mode. */
+    private void addCompressed(long n) {
+        long key = n >>> PAGE_SHIFT;
+        Container c = chunks.get(key);
+        if (c == null) { chunkKeys.add(key); }
+        Container updated = (c == null ? new ArrayContainer() : c).add((int) (n & (PAGE_BITS - 1)));
+        if (updated != c) { chunks.put(key, updated); }
+        if (n - start == pos) { advanceCompressed(); }
+    }
+
+    /**
+     * Move {@code pos} forward to the next absent element in the chunk at
+     * {@code start}, discarding that chunk whenever it turns out to be full.
+     */
+    private void advanceCompressed() {
+        while (true) {
+            Container c = chunks.get(start >>> PAGE_SHIFT);
+            if (c == null) { return; }
+            pos = c.nextAbsent((int) pos);
+            if (pos < PAGE_BITS) { return; }
+            chunks.remove(start >>> PAGE_SHIFT);
+            chunkKeys.remove(start >>> PAGE_SHIFT);
+            start += PAGE_BITS;
+            pos = 0;
+            shiftCount += PAGE_BITS;
+        }
+    }
+
+    /**
+     * A container for the elements of one chunk of 2^16 consecutive numbers,
+     * given as their low 16 bits. Adding an element returns the container to
+     * keep using, which is a different kind of container when that suits the
+     * contents better.
+     */
+    private abstract static class Container {
+        abstract boolean contains(int low);
+        abstract Container add(int low);
+        /** Return the smallest absent element that is at least {@code from}, or 2^16 if none. */
+        abstract int nextAbsent(int from);
+        /** Return the smallest present element that is at least {@code from}, or 2^16 if none. */
+        abstract int nextPresent(int from);
+        abstract int cardinality();
+        /** Return the number of elements {@code x} with {@code from <= x < to}. */
+        abstract int cardinality(int from, int to);
+        abstract long memoryBytes();
+    }
+
+    /** The most elements that an array container holds before it converts. */
+    private static final int ARRAY_MAX = 4096;
+
+    /** The most runs that a run container holds before it converts into a bitmap. */
+    private static final int RUNS_MAX = 2048;
+
+    /** A sorted array of the elements, for sparse chunks. */
+    private static final class ArrayContainer extends Container {
+        private char[] values = new char[4];
+        private int size = 0;
+
+        @Override boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+        }
+
+        @Override Container add(int low) {
+            int i = Arrays.binarySearch(values, 0, size, (char) low);
+            if (i >= 0) { return this; }
+            if (size == ARRAY_MAX) {
+                // Too many elements for an array. Runs or bitmap, whichever is smaller.
+                Container bigger = (runCount() <= RUNS_MAX) ? new RunContainer() : new BitmapContainer();
+                for (int j = 0; j < size; j++) { bigger = bigger.add(values[j]); }
+                return bigger.add(low);
+            }
+            i = -(i + 1);
+            if (size == values.length) { values = Arrays.copyOf(values, 2 * size); }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = (char) low;
+            size++;
+            return this;
+        }
+
+        /** Return how many maximal runs of consecutive values the array contains. */
+        private int runCount() {
+            int runs = (size > 0) ? 1 : 0;
+            for (int j = 1; j < size; j++) {
+                if (values[j] != values[j - 1] + 1) { runs++; }
+            }
+            return runs;
+        }
+
+        @Override int nextAbsent(int from) {
+            int i = Arrays.binarySearch(values, 0, size, (char) from);
+            if (i < 0) { return from; }
+            // Follow the consecutive values that start from the value at i.
+            while (i + 1 < size && values[i + 1] == values[i] + 1) { i++; }
+            return values[i] + 1;
+        }
+
+        /** Return the number of values less than {@code x}. */
+        private int rank(int x) {
+            if (x >= PAGE_BITS) { return size; }
+            int i = Arrays.binarySearch(values, 0, size, (char) x);
+            return (i >= 0) ? i : -(i + 1);
+        }
+
+        @Override int nextPresent(int from) {
+            int i = rank(from);
+            return (i < size) ? values[i] : PAGE_BITS;
+        }
+
+        @Override int cardinality() { return size; }
+        @Override int cardinality(int from, int to) { return rank(to) - rank(from); }
+        @Override long memoryBytes() { return 32 + 2L * values.length; }
+    }
+
+    /** An uncompressed bitmap of the 2^16 possible elements, for dense chunks. */
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[PAGE_WORDS];
+        private int cardinality = 0;
+
+        @Override boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override Container add(int low) {
+            long old = words[low >>> 6];
+            words[low >>> 6] = old | (1L << low);
+            if ((old & (1L << low)) == 0 && ++cardinality == PAGE_BITS) {
+                var full = new RunContainer();
+                return full.addRun(0, PAGE_BITS - 1);
+            }
+            return this;
+        }
+
+        /**
+         * Return the index of the first clear bit in the page at or after
+         * {@code from}, or the page size if there is none, scanning a whole
+         * word at a time.
+         */
+        static int nextClear(long[] words, int from) {
+            int w = from >>> 6;
+            if (w >= words.length) { return PAGE_BITS; }
+            long clear = ~words[w] & (-1L << from); // the clear bits at or after from in this word
+            while (clear == 0) {
+                if (++w == words.length) { return PAGE_BITS; }
+                clear = ~words[w];
+            }
+            return 64 * w + Long.numberOfTrailingZeros(clear);
+        }
+
+        /** Return the index of the first set bit at or after {@code from}, or the page size. */
+        static int nextSet(long[] words, int from) {
+            int w = from >>> 6;
+            if (w >= words.length) { return PAGE_BITS; }
+            long set = words[w] & (-1L << from);
+            while (set == 0) {
+                if (++w == words.length) { return PAGE_BITS; }
+                set = words[w];
+            }
+            return 64 * w + Long.numberOfTrailingZeros(set);
+        }
+
+        /**
+         * Return the number of set bits with indices {@code from <= i < to},
+         * masking the partial words at both ends and counting the whole words
+         * between them with {@code Long.bitCount}, a single instruction on
+         * most modern processors.
+         */
+        static int countRange(long[] words, int from, int to) {
+            if (from >= to) { return 0; }
+            int first = from >>> 6, last = (to - 1) >>> 6;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> (63 - ((to - 1) & 63));
+            if (first == last) { return Long.bitCount(words[first] & firstMask & lastMask); }
+            int count = Long.bitCount(words[first] & firstMask);
+            for (int w = first + 1; w < last; w++) { count += Long.bitCount(words[w]); }
+            return count + Long.bitCount(words[last] & lastMask);
+        }
+
+        @Override int nextAbsent(int from) { return nextClear(words, from); }
+        @Override int nextPresent(int from) { return nextSet(words, from); }
+        @Override int cardinality() { return cardinality; }
+        @Override int cardinality(int from, int to) { return countRange(words, from, to); }
+        @Override long memoryBytes() { return 32 + 8L * PAGE_WORDS; }
+    }
+
+    /**
+     * A sorted array of the maximal runs of consecutive elements, for chunks
+     * whose elements are clustered. Each run takes only four bytes however long
+     * it is, so a completely full chunk needs just one run.
+     */
+    private static final class RunContainer extends Container {
+        private char[] firsts = new char[2];    // the first element of each run
+        private char[] lasts = new char[2];     // the last element of each run
+        private int runs = 0;
+        private int cardinality = 0;
+
+        /** Return the index of the last run that starts at or before {@code low}, or -1. */
+        private int runAtOrBefore(int low) {
+            int lo = 0, hi = runs - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (firsts[mid] <= low) { lo = mid + 1; } else { hi = mid - 1; }
+            }
+            return hi;
+        }
+
+        @Override boolean contains(int low) {
+            int r = runAtOrBefore(low);
+            return r >= 0 && low <= lasts[r];
+        }
+
+        @Override Container add(int low) {
+            int r = runAtOrBefore(low);
+            if (r >= 0 && low <= lasts[r]) { return this; }
+            boolean joinsPrevious = r >= 0 && lasts[r] + 1 == low;
+            boolean joinsNext = r + 1 < runs && firsts[r + 1] - 1 == low;
+            if (joinsPrevious && joinsNext) {
+                // The element fills the gap between two runs, which become one.
+                lasts[r] = lasts[r + 1];
+                System.arraycopy(firsts, r + 2, firsts, r + 1, runs - r - 2);
+                System.arraycopy(lasts, r + 2, lasts, r + 1, runs - r - 2);
+                runs--;
+            } else if (joinsPrevious) {
+                lasts[r]++;
+            } else if (joinsNext) {
+                firsts[r + 1]--;
+            } else {
+                if (runs == RUNS_MAX) {
+                    // Too fragmented to be worth it, so become a bitmap instead.
+                    Container bitmap = new BitmapContainer();
+                    for (int i = 0; i < runs; i++) {
+                        for (int v = firsts[i]; v <= lasts[i]; v++) { bitmap = bitmap.add(v); }
+                    }
+                    return bitmap.add(low);
+                }
+                insertRun(r + 1, low, low);
+            }
+            cardinality++;
+            return this;
+        }
+
+        /** Add the run of elements {@code first..last} into this empty container. */
+        RunContainer addRun(int first, int last) {
+            insertRun(0, first, last);
+            cardinality = last - first + 1;
+            return this;
+        }
+
+        private void insertRun(int i, int first, int last) {
+            if (runs == firsts.length) {
+                firsts = Arrays.copyOf(firsts, 2 * runs);
+                lasts = Arrays.copyOf(lasts, 2 * runs);
+            }
+            System.arraycopy(firsts, i, firsts, i + 1, runs - i);
+            System.arraycopy(lasts, i, lasts, i + 1, runs - i);
+            firsts[i] = (char) first;
+            lasts[i] = (char) last;
+            runs++;
+        }
+
+        @Override int nextAbsent(int from) {
+            int r = runAtOrBefore(from);
+            // Runs are maximal, so the element after a run is always absent.
+            return (r >= 0 && from <= lasts[r]) ? lasts[r] + 1 : from;
+        }
+
+        @Override int nextPresent(int from) {
+            int r = runAtOrBefore(from);
+            if (r >= 0 && from <= lasts[r]) { return from; }
+            return (r + 1 < runs) ? firsts[r + 1] : PAGE_BITS;
+        }
+
+        @Override int cardinality() { return cardinality; }
+
+        @Override int cardinality(int from, int to) {
+            int count = 0;
+            for (int r = Math.max(0, runAtOrBefore(from)); r < runs && firsts[r] < to; r++) {
+                int lo = Math.max(from, firsts[r]), hi = Math.min(to - 1, lasts[r]);
+                if (lo <= hi) { count += hi - lo + 1; }
+            }
+            return count;
+        }
+
+        @Override long memoryBytes() { return 48 + 4L * firsts.length; }
+    }
+
     /**
      * Test whether the natural number {@code n} is a member of the set.
      *
@@ -107,24 +491,211 @@ public class NatSet {
      */
     public boolean contains(long n) {
         if (n < start) { return true; }             // left of window: implicit member
-        int index = (int) (n - start);
-        if (index >= capacity) { return false; }     // right of window: not yet added
-        return data.get(index);
+        if (chunks != null) {
+            Container c = chunks.get(n >>> PAGE_SHIFT);
+            return c != null && c.contains((int) (n & (PAGE_BITS - 1)));
+        }
+        long index = n - start;
+        if (index >= capacity()) { return false; }  // right of window: not yet added
+        return (page(index)[(int) (index >>> 6) & (PAGE_WORDS - 1)] & (1L << index)) != 0;
+    }
+
+    // --- Ordered queries, scanning a whole word or container at a time ---
+    //
+    // Chunks of the compressed mode and pages of the ring are both aligned to
+    // multiples of 2^16, since start is always such a multiple. So in both
+    // modes, base + offset splits each number into its chunk and its position.
+
+    /**
+     * Return the smallest natural number at least {@code from} that is not
+     * a member of the set.
+     *
+     * @param from where to start looking
+     * @return the first absent number at or after {@code from}
+     */
+    public long nextAbsent(long from) {
+        from = Math.max(from, allTrueUpTo()); // everything before that is present
+        while (true) {
+            long base = from & ~(long) (PAGE_BITS - 1);
+            int offset = (int) (from - base);
+            int found;
+            if (chunks != null) {
+                Container c = chunks.get(base >>> PAGE_SHIFT);
+                if (c == null) { return from; }
+                found = c.nextAbsent(offset);
+            } else {
+                if (from - start >= capacity()) { return from; } // right of window: all absent
+                found = BitmapContainer.nextClear(page(from - start), offset);
+            }
+            if (found < PAGE_BITS) { return base + found; }
+            from = base + PAGE_BITS; // this chunk was full from offset on
+        }
+    }
+
+    /**
+     * Return the smallest member of the set that is at least {@code from}.
+     *
+     * @param from where to start looking
+     * @return the first member at or after {@code from}, or -1 if there is none
+     */
+    public long nextPresent(long from) {
+        from = Math.max(from, 0);
+        if (from < start) { return from; } // left of window: all present
+        while (true) {
+            long base = from & ~(long) (PAGE_BITS - 1);
+            int offset = (int) (from - base);
+            if (chunks != null) {
+                Container c = chunks.get(base >>> PAGE_SHIFT);
+                int found = (c == null) ? PAGE_BITS : c.nextPresent(offset);
+                if (found < PAGE_BITS) { return base + found; }
+                Long nextKey = chunkKeys.higher(base >>> PAGE_SHIFT); // skip empty chunks
+                if (nextKey == null) { return -1; }
+                from = nextKey << PAGE_SHIFT;
+            } else {
+                if (from - start >= capacity()) { return -1; }
+                int found = BitmapContainer.nextSet(page(from - start), offset);
+                if (found < PAGE_BITS) { return base + found; }
+                from = base + PAGE_BITS;
+            }
+        }
+    }
+
+    /**
+     * Return the members {@code n} of the set with {@code from <= n < to}
+     * as a stream of primitive longs, in ascending order.
+     *
+     * @param from the inclusive lower bound
+     * @param to   the exclusive upper bound
+     * @return the stream of the members in that range
+     */
+    public LongStream members(long from, long to) {
+        long first = nextPresent(from);
+        return LongStream.iterate(first, n -> n >= 0 && n < to, n -> nextPresent(n + 1));
+    }
+
+    /**
+     * Return how many members {@code n} of the set satisfy {@code from <= n < to}.
+     *
+     * @param from the inclusive lower bound
+     * @param to   the exclusive upper bound
+     * @return the number of members in that range
+     */
+    public long cardinality(long from, long to) {
+        from = Math.max(from, 0);
+        if (to <= from) { return 0; }
+        long count = Math.max(0, Math.min(to, start) - from); // left of window: all present
+        from = Math.max(from, start);
+        if (chunks != null) {
+            if (from >= to) { return count; }
+            for (long key : chunkKeys.subSet(from >>> PAGE_SHIFT, true, (to - 1) >>> PAGE_SHIFT, true)) {
+                long base = key << PAGE_SHIFT;
+                int lo = (int) (Math.max(from, base) - base);
+                int hi = (int) (Math.min(to, base + PAGE_BITS) - base);
+                count += chunks.get(key).cardinality(lo, hi);
+            }
+            return count;
+        }
+        to = Math.min(to, start + capacity()); // right of window: all absent
+        while (from < to) {
+            long base = from & ~(long) (PAGE_BITS - 1);
+            long end = Math.min(to, base + PAGE_BITS);
+            count += BitmapContainer.countRange(page(from - start), (int) (from - base), (int) (end - base));
+            from = end;
+        }
+        return count;
     }
 
     // --- Demo: tortoise and hare verification ---
 
     public static void main(String[] args) {
+        System.out.println("Ring of pages:");
+        tortoiseAndHare(new NatSet());
+        System.out.println("Compressed containers:");
+        tortoiseAndHare(new NatSet(true));
+
+        // A dense prefix followed by a few elements very far ahead.
+        System.out.println("Sparse elements far ahead:");
+        var rng = new java.util.SplittableRandom(42);
+        long[] far = rng.longs(1000, 0, 1_000_000_000_000L).toArray();
+        var compressed = new NatSet(true);
+        for (long n = 0; n < 1_000_000; n += 1 + (n % 3) / 2) { compressed.add(n); }
+        for (long n : far) { compressed.add(n); }
+        boolean allFound = Arrays.stream(far).allMatch(compressed::contains);
+        System.out.printf("  Compressed: all found %s, %,d bytes%n", allFound, compressed.memoryBytes());
+        long farCount = Arrays.stream(far).filter(n -> n >= 1_000_000).distinct().count();
+        System.out.printf("  Members past the prefix: %d, cardinality %d, streamed %d%n", farCount,
+                compressed.cardinality(1_000_000, Long.MAX_VALUE),
+                compressed.members(1_000_000, Long.MAX_VALUE).count());
+        // The ring would need its pages all the way to the farthest element,
+        // so limit its demonstration to elements below a hundred million.
+        var ringed = new NatSet();
+        for (long n = 0; n < 1_000_000; n += 1 + (n % 3) / 2) { ringed.add(n); }
+        for (long n : far) { ringed.add(n / 10_000); }
+        System.out.printf("  Ring, 10,000 times less far: %,d bytes%n", ringed.memoryBytes());
+
+        System.out.println("Range queries:");
+        rangeQueries(new NatSet());
+        rangeQueries(new NatSet(true));
+
+        // A negative lower bound must not report 0 as a member unless it is one.
+        System.out.println("Negative lower bounds:");
+        for (boolean useCompressed : new boolean[] {false, true}) {
+            var s = new NatSet(useCompressed);
+            long emptyNext = s.nextPresent(-5), emptyMembers = s.members(-5, 10).count();
+            s.add(3);
+            System.out.printf("  %s mode: empty set nextPresent(-5) = %d, members(-5, 10) count %d;"
+                    + " set {3} nextPresent(-5) = %d, members(-5, 10) = %s%n",
+                    useCompressed ? "Compressed" : "Ring", emptyNext, emptyMembers,
+                    s.nextPresent(-5), Arrays.toString(s.members(-5, 10).toArray()));
+        }
+    }
+
+    /**
+     * Verify the range queries against one {@code contains} call per number,
+     * and compare their speeds on the same range.
+     */
+    private static void rangeQueries(NatSet s) {
+        // Each number is a member with probability 4/5, so the gaps are random.
+        var rng = new java.util.SplittableRandom(42);
+        long limit = 10_000_000;
+        for (long n = 0; n < limit; n++) {
+            if (rng.nextInt(5) > 0) { s.add(n); }
+        }
+        long from = 1_000_000, to = limit + 1000;
+
+        long startTime = System.nanoTime();
+        long slowCount = 0, slowGap = -1;
+        for (long n = from; n < to; n++) {
+            if (s.contains(n)) { slowCount++; } else if (slowGap < 0) { slowGap = n; }
+        }
+        long slowTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        long fastCount = s.cardinality(from, to);
+        long fastTime = System.nanoTime() - startTime;
+        long fastGap = s.nextAbsent(from);
+        long streamCount = s.members(from, to).count();
+        boolean streamAgrees = s.members(from, from + 1000)
+                .allMatch(s::contains) && s.nextPresent(to) == -1;
+
+        System.out.printf("  %s mode: cardinality %,d in %.2f ms versus %,d with contains in %.2f ms%n",
+                s.chunks == null ? "Ring" : "Compressed", fastCount, fastTime / 1e6, slowCount, slowTime / 1e6);
+        System.out.printf("    first gap %,d (%,d with contains), stream count %,d, stream agrees %s%n",
+                fastGap, slowGap, streamCount, streamAgrees);
+    }
+
+    private static void tortoiseAndHare(NatSet s) {
         // Demonstration of the "tortoise and hare" principle where two
         // position indices advance the exact same path, except that hare
         // makes two moves for every one move of tortoise. Two identical
         // RNGs generate the same steps for both. The hare adds elements
         // as it goes; the tortoise verifies membership and fills gaps.
-        var s = new NatSet();
         var hareRng = new java.util.SplittableRandom(123);
         var tortoiseRng = new java.util.SplittableRandom(123);
 
+        long startTime = System.nanoTime();
         long t = 0, h = 0;
+        s.add(0); // Both start at zero, so it must be in the set.
         for (int i = 0; i < 100_000_000; i++) {
             h += hareRng.nextInt(1, 11);  // 1..10 inclusive
             s.add(h);
@@ -139,7 +710,9 @@ public class NatSet {
                 assert s.contains(t) : t + " should be in the set";
             }
         }
-        System.out.println("Ended with hare at " + h + " and tortoise at " + t);
-        System.out.println("Shift count: " + s.getShiftCount());
+        System.out.println("  Ended with hare at " + h + " and tortoise at " + t
+                + " in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        System.out.println("  Shift count: " + s.getShiftCount());
+        System.out.printf("  Memory used: %,d bytes%n", s.memoryBytes());
     }
-}
\ No newline at end of file
+}
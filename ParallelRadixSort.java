@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Parallel LSD (least significant digit first) radix sort of {@code int} and
+ * {@code long} keys, using Java's Fork/Join framework.
+ * <p>
+ * A comparison sort such as {@link FJMergeSort} needs about {@code log2(n)}
+ * passes over the data, each full of hard-to-predict branches. Radix sort
+ * instead looks at the keys one <em>digit</em> of a few bits at a time, from the
+ * least significant digit up, and for each digit, moves every key straight into
+ * its final place for that pass with a <em>counting sort</em> that never compares
+ * two keys. Since each pass is stable, after the pass for the most significant
+ * digit the keys are fully sorted. With 11-bit digits, 32-bit keys take three
+ * passes regardless of n.
+ * <p>
+ * Each pass is done in parallel in three phases. The array is cut into blocks,
+ * one for each task:
+ * <ol>
+ *   <li>Each task counts how many keys of its own block have each digit value,
+ *       in its own histogram, so the tasks never write to shared counters.</li>
+ *   <li>A prefix sum over the histograms, digit by digit and block by block,
+ *       gives each block the position where its keys with each digit value
+ *       go. This part is tiny, so it is done sequentially.</li>
+ *   <li>Each task scatters the keys of its block to those positions. No two
+ *       tasks ever write to the same position, so no locking is needed.</li>
+ * </ol>
+ * Signed keys would put the negative numbers after the positive ones, so the
+ * sort first finds the smallest and largest key, and sorts the differences
+ * {@code key - min} as unsigned numbers instead. This also lets it skip the
+ * passes for the high digits that are the same in every key: keys that are all
+ * between 0 and a million need only two passes of ten bits each.
+ * <p>
+ * Merge sort still wins for small arrays, where the histograms cost more than
+ * they save, and for wide key ranges of {@code long} keys. The static method
+ * {@link #chooseFor(int[])} estimates the cost of both, and picks the cheaper.
+ *
+ * @author Ilkka Kokkarinen
+ */
+public class ParallelRadixSort extends RecursiveAction {
+
+    /** Digits are at most this many bits wide, so each histogram fits in the L1 cache. */
+    private static final int MAX_DIGIT_BITS = 11;
+
+    /** Each task handles a block of at least this many keys. */
+    private static final int MIN_BLOCK = 1 << 16;
+
+    private final int[] ints;       // The array being sorted, if it is an int array.
+    private final long[] longs;     // The array being sorted, if it is a long array.
+
+    // The smallest and the largest key, once known.
+    private boolean rangeKnown;
+    private long min, max;
+
+    /** Create a task to sort the entire {@code int} array. */
+    public ParallelRadixSort(int[] array) {
+        this.ints = array;
+        this.longs = null;
+    }
+
+    /** Create a task to sort the entire {@code long} array. */
+    public ParallelRadixSort(long[] array) {
+        this.ints = null;
+        this.longs = array;
+    }
+
+    // -----------------------------------------------------------------------
+    // RecursiveAction entry point — called by the Fork/Join framework.
+    // -----------------------------------------------------------------------
+
+    @Override
+    protected void compute() {
+        int n = ints != null ? ints.length : longs.length;
+        if (n < 2) { return; }
+        int blocks = blockCount(n);
+        if (!rangeKnown) { findRange(blocks); }
+        if (ints != null) { sortInts(blocks); } else { sortLongs(blocks); }
+    }
+
+    /** Return how many blocks to cut {@code n} keys into, for the current pool. */
+    private static int blockCount(int n) {
+        int parallelism = ForkJoinTask.inForkJoinPool() ? getPool().getParallelism()
+                : ForkJoinPool.commonPool().getParallelism();
+        return Math.max(1, Math.min(4 * parallelism, n / MIN_BLOCK));
+    }
+
+    /** Run {@code work} for each of the blocks as a separate parallel task. */
+    private static void forEachBlock(int blocks, IntConsumer work) {
+        if (blocks == 1) {
+            work.accept(0);
+            return;
+        }
+        var tasks = new ArrayList<ForkJoinTask<?>>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            final int block = b;
+            tasks.add(ForkJoinTask.adapt(() -> work.accept(block)));
+        }
+        invokeAll(tasks);
+    }
+
+    /** Return the start of the given block of {@code n} keys cut into {@code blocks} blocks. */
+    private static int blockStart(int n, int blocks, int b) {
+        return (int) ((long) n * b / blocks);
+    }
+
+    /** Find the smallest and the largest key, in parallel. */
+    private void findRange(int blocks) {
+        int n = ints != null ? ints.length : longs.length;
+        long[] mins = new long[blocks], maxs = new long[blocks];
+        forEachBlock(blocks, b -> {
+            long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+            for (int i = blockStart(n, blocks, b); i < blockStart(n, blocks, b + 1); i++) {
+                long key = ints != null ? ints[i] : longs[i];
+                lo = Math.min(lo, key);
+                hi = Math.max(hi, key);
+            }
+            mins[b] = lo;
+            maxs[b] = hi;
+        });
+        min = Arrays.stream(mins).min().orElseThrow();
+        max = Arrays.stream(maxs).max().orElseThrow();
+        rangeKnown = true;
+    }
+
+    /** Return how many bits the differences {@code key - min} need, as unsigned numbers. */
+    private int keyBits() {
+        return 64 - Long.numberOfLeadingZeros(max - min);
+    }
+
+    /** Return how many passes keys of this many bits take. */
+    private static int passCount(int bits) {
+        return (bits + MAX_DIGIT_BITS - 1) / MAX_DIGIT_BITS;
+    }
+
+    // -----------------------------------------------------------------------
+    // The sort itself, written out separately for int and long keys.
+    // -----------------------------------------------------------------------
+
+    private void sortInts(int blocks) {
+        int n = ints.length;
+        int bits = keyBits();
+        int passes = passCount(bits);
+        if (passes == 0) { return; } // All the keys are equal.
+        // Spread the bits evenly over the passes, for the smallest histograms.
+        int digitBits = (bits + passes - 1) / passes;
+        int radix = 1 << digitBits, mask = radix - 1;
+        int offset = (int) min;
+        int[][] counts = new int[blocks][radix];
+
+        int[] src = ints, dst = new int[n];
+        for (int pass = 0; pass < passes; pass++) {
+            final int shift = pass * digitBits;
+            final int[] from = src, to = dst;
+
+            // Phase 1: each block counts its own digits.
+            forEachBlock(blocks, b -> {
+                int[] count = counts[b];
+                Arrays.fill(count, 0);
+                for (int i = blockStart(n, blocks, b); i < blockStart(n, blocks, b + 1); i++) {
+                    count[((from[i] - offset) >>> shift) & mask]++;
+                }
+            });
+
+            // Phase 2: turn the counts into the positions where each block
+            // writes its keys with each digit value. If all keys have the same
+            // digit, this pass would not move anything, so skip it.
+            if (prefixSums(counts, radix) == n) { continue; }
+
+            // Phase 3: each block scatters its keys, in their original order.
+            forEachBlock(blocks, b -> {
+                int[] position = counts[b];
+                for (int i = blockStart(n, blocks, b); i < blockStart(n, blocks, b + 1); i++) {
+                    int key = from[i];
+                    to[position[((key - offset) >>> shift) & mask]++] = key;
+                }
+            });
+            src = to;
+            dst = from;
+        }
+        if (src != ints) {
+            final int[] sorted = src;
+            forEachBlock(blocks, b -> System.arraycopy(sorted, blockStart(n, blocks, b), ints,
+                    blockStart(n, blocks, b), blockStart(n, blocks, b + 1) - blockStart(n, blocks, b)));
+        }
+    }
+
+    private void sortLongs(int blocks) {
+        int n = longs.length;
+        int bits = keyBits();
+        int passes = passCount(bits);
+        if (passes == 0) { return; }
+        int digitBits = (bits + passes - 1) / passes;
+        int radix = 1 << digitBits, mask = radix - 1;
+        long offset = min;
+        int[][] counts = new int[blocks][radix];
+
+        long[] src = longs, dst = new long[n];
+        for (int pass = 0; pass < passes; pass++) {
+            final int shift = pass * digitBits;
+            final long[] from = src, to = dst;
+            forEachBlock(blocks, b -> {
+                int[] count = counts[b];
+                Arrays.fill(count, 0);
+                for (int i = blockStart(n, blocks, b); i < blockStart(n, blocks, b + 1); i++) {
+                    count[(int) ((from[i] - offset) >>> shift) & mask]++;
+                }
+            });
+            if (prefixSums(counts, radix) == n) { continue; }
+            forEachBlock(blocks, b -> {
+                int[] position = counts[b];
+                for (int i = blockStart(n, blocks, b); i < blockStart(n, blocks, b + 1); i++) {
+                    long key = from[i];
+                    to[position[(int) ((key - offset) >>> shift) & mask]++] = key;
+                }
+            });
+            src = to;
+            dst = from;
+        }
+        if (src != longs) {
+            final long[] sorted = src;
+            forEachBlock(blocks, b -> System.arraycopy(sorted, blockStart(n, blocks, b), longs,
+                    blockStart(n, blocks, b), blockStart(n, blocks, b + 1) - blockStart(n, blocks, b)));
+        }
+    }
+
+    /**
+     * Replace the counts with the positions where each block writes its first
+     * key with each digit value: all the keys with smaller digits go before it,
+     * and so do the keys with the same digit in the earlier blocks. Return the
+     * largest number of keys that share one digit value.
+     */
+    private static int prefixSums(int[][] counts, int radix) {
+        int position = 0, largest = 0;
+        for (int d = 0; d < radix; d++) {
+            int start = position;
+            for (int[] count : counts) {
+                int c = count[d];
+                count[d] = position;
+                position += c;
+            }
+            largest = Math.max(largest, position - start);
+        }
+        return largest;
+    }
+
+    // -----------------------------------------------------------------------
+    // Choosing between radix sort and merge sort.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Return the task that is expected to sort the given array faster: this
+     * radix sort, or {@link FJMergeSort}. Merge sort does about
+     * {@code log2(n / 50)} passes with an unpredictable branch per element in
+     * each, whereas radix sort does one pass to find the key range and two for
+     * each digit, plus the work of clearing and summing the histograms.
+     *
+     * @param array the array to sort
+     * @return a task that sorts it, to be invoked in the pool of your choice
+     */
+    public static RecursiveAction chooseFor(int[] array) {
+        var radix = new ParallelRadixSort(array);
+        return radix.cheaperThanMergeSort() ? radix : new FJMergeSort(array);
+    }
+
+    /** The same as {@link #chooseFor(int[])}, but for {@code long} arrays. */
+    public static RecursiveAction chooseFor(long[] array) {
+        var radix = new ParallelRadixSort(array);
+        return radix.cheaperThanMergeSort() ? radix : new FJMergeSort(array);
+    }
+
+    /** Find the key range, and compare the estimated costs of both sorts. */
+    private boolean cheaperThanMergeSort() {
+        int n = ints != null ? ints.length : longs.length;
+        if (n < 2) { return false; }
+        int blocks = blockCount(n);
+        ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> findRange(blocks)));
+        int passes = passCount(keyBits());
+        int digitBits = passes == 0 ? 0 : (keyBits() + passes - 1) / passes;
+        double radixCost = (2.0 * passes + 1) * n + 2.0 * passes * blocks * (1 << digitBits);
+        double mergeCost = 4.0 * n * Math.max(1, Math.log(n / 50.0) / Math.log(2));
+        return radixCost < mergeCost;
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelRadixSort[" + (ints != null ? ints.length + " ints" : longs.length + " longs")
+                + (rangeKnown ? ", " + passCount(keyBits()) + " passes" : "") + "]";
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — compare against merge sort on different key ranges.
+    // -----------------------------------------------------------------------
+
+    private static double timeMillis(Runnable sort) {
+        long start = System.nanoTime();
+        sort.run();
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    public static void main(String[] args) {
+        var rng = new Random(42);
+        var pool = ForkJoinPool.commonPool();
+        System.out.printf("%d threads available%n", pool.getParallelism() + 1);
+        for (int size : new int[] {1_000, 100_000, 10_000_000}) {
+            int[][] inputs = {
+                rng.ints(size).toArray(),
+                rng.ints(size, -500_000, 500_000).toArray(),
+                rng.ints(size, 0, 256).toArray()
+            };
+            String[] names = {"full int range", "[-500000, 500000)", "[0, 256)"};
+            System.out.printf("%n%,d ints:%n", size);
+            for (int i = 0; i < inputs.length; i++) {
+                int[] radix = inputs[i].clone(), merge = inputs[i].clone(), jdk = inputs[i].clone();
+                int[] auto = inputs[i].clone();
+                double radixTime = timeMillis(() -> pool.invoke(new ParallelRadixSort(radix)));
+                double mergeTime = timeMillis(() -> pool.invoke(new FJMergeSort(merge)));
+                double jdkTime = timeMillis(() -> Arrays.parallelSort(jdk));
+                var chosen = chooseFor(auto);
+                double autoTime = timeMillis(() -> pool.invoke(chosen));
+                System.out.printf("  %-18s radix %8.3f ms, merge %8.3f ms, Arrays.parallelSort %8.3f ms, "
+                                + "chose %s %8.3f ms, same: %s%n", names[i] + ":", radixTime, mergeTime, jdkTime,
+                        chosen instanceof ParallelRadixSort ? "radix" : "merge", autoTime,
+                        Arrays.equals(radix, jdk) && Arrays.equals(merge, jdk) && Arrays.equals(auto, jdk));
+            }
+        }
+
+        int size = 10_000_000;
+        long[] longs = rng.longs(size).toArray();
+        long[] radix = longs.clone(), merge = longs.clone(), jdk = longs.clone();
+        double radixTime = timeMillis(() -> pool.invoke(new ParallelRadixSort(radix)));
+        double mergeTime = timeMillis(() -> pool.invoke(new FJMergeSort(merge)));
+        double jdkTime = timeMillis(() -> Arrays.parallelSort(jdk));
+        System.out.printf("%n%,d longs, full range:%n  radix %8.3f ms, merge %8.3f ms, Arrays.parallelSort %8.3f ms, "
+                        + "auto would choose %s, same: %s%n", size, radixTime, mergeTime, jdkTime,
+                chooseFor(longs) instanceof ParallelRadixSort ? "radix" : "merge",
+                Arrays.equals(radix, jdk) && Arrays.equals(merge, jdk));
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * A <b>scalable Bloom filter</b> (Almeida, Baquero, Preguiça and Hutchison, 2007)
+ * that keeps its false positive guarantee no matter how many elements are added.
+ * <p>
+ * An ordinary {@link BloomFilter} is sized once for its expected number of
+ * elements, and when more elements are added than planned, its false positive
+ * rate silently degrades towards 100%. A scalable filter instead starts with
+ * a small plain filter, and whenever the current filter has reached its planned
+ * capacity, it is frozen and a new, larger <em>layer</em> is added. New elements
+ * always go into the newest layer, and an element is reported present if
+ * any layer reports it present.
+ * <p>
+ * A false positive of the whole filter requires a false positive in at least
+ * one layer, so the overall false positive rate is at most the sum of the layer
+ * rates. Layer {@code i} is planned for {@code capacity * s^i} elements at the
+ * rate {@code p0 * r^i} for the <em>growth factor</em> {@code s} and the
+ * <em>tightening ratio</em> {@code 0 < r < 1}, so the sum is bounded by the
+ * geometric series {@code p0 / (1 - r)}. Choosing {@code p0 = P * (1 - r)} then
+ * guarantees the overall rate {@code P}, however many layers there are. The
+ * geometric growth keeps the number of layers logarithmic in the element count.
+ * <p>
+ * The layers use the wide 64-bit hashing mode, since their bit counts grow
+ * without bound.
+ *
+ * @param <E> the element type
+ * @author Ilkka Kokkarinen
+ */
+public class ScalableBloomFilter<E> {
+
+    private final List<BloomFilter<E>> layers = new ArrayList<>();
+    private final ToLongFunction<E> toLong;     // element → long conversion
+    private final double falsePositiveRate;     // P, the overall guarantee
+    private final int growthFactor;             // s, the capacity growth per layer
+    private final double tighteningRatio;       // r, the error shrink per layer
+
+    private long layerCapacity;                 // planned capacity of the newest layer
+    private double layerRate;                   // planned FP rate of the newest layer
+    private long elementCount;                  // n — elements added so far
+
+    /**
+     * Create a scalable Bloom filter.
+     *
+     * @param initialCapacity   planned number of elements in the first layer
+     * @param falsePositiveRate the overall false positive bound P (e.g. 0.01)
+     * @param growthFactor      the capacity multiplier s for each new layer (typically 2 or 4)
+     * @param tighteningRatio   the FP rate multiplier r for each new layer (typically 0.8 to 0.9)
+     * @param toLong            element-to-long conversion (null for hashCode)
+     */
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate,
+                               int growthFactor, double tighteningRatio, ToLongFunction<E> toLong) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive, got: " + initialCapacity);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1), got: " + falsePositiveRate);
+        }
+        if (growthFactor < 1) {
+            throw new IllegalArgumentException("Growth factor must be at least 1, got: " + growthFactor);
+        }
+        if (!(tighteningRatio > 0 && tighteningRatio < 1)) {
+            throw new IllegalArgumentException("Tightening ratio must be in (0, 1), got: " + tighteningRatio);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.growthFactor = growthFactor;
+        this.tighteningRatio = tighteningRatio;
+        this.toLong = toLong;
+        this.layerCapacity = initialCapacity;
+        this.layerRate = falsePositiveRate * (1 - tighteningRatio); // p0
+        layers.add(BloomFilter.withLongHash(layerCapacity, layerRate, toLong));
+    }
+
+    /** Convenience constructor with growth factor 2 and tightening ratio 0.85. */
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate, ToLongFunction<E> toLong) {
+        this(initialCapacity, falsePositiveRate, 2, 0.85, toLong);
+    }
+
+    /**
+     * Add an element to the filter, first adding a new layer if the newest
+     * layer has already reached its planned capacity.
+     *
+     * @param element the element to add
+     */
+    public void add(E element) {
+        BloomFilter<E> newest = layers.get(layers.size() - 1);
+        if (newest.size() >= layerCapacity) {
+            layerCapacity = Math.multiplyExact(layerCapacity, growthFactor);
+            layerRate *= tighteningRatio;
+            newest = BloomFilter.withLongHash(layerCapacity, layerRate, toLong);
+            layers.add(newest);
+        }
+        newest.add(element);
+        elementCount++;
+    }
+
+    /**
+     * Query whether an element is probably in the filter. The newest layers
+     * are the largest, so they are checked first.
+     *
+     * @param element the element to look up
+     * @return whether the element is probably present
+     */
+    public boolean probablyContains(E element) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            if (layers.get(i).probablyContains(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // -----------------------------------------------------------------------
+    // Diagnostics
+    // -----------------------------------------------------------------------
+
+    /** Return the number of elements that have been added. */
+    public long size() { return elementCount; }
+
+    /** Return the current number of layers. */
+    public int layerCount() { return layers.size(); }
+
+    /** Return the total number of bits in all layers. */
+    public long bitCount() {
+        return layers.stream().mapToLong(BloomFilter::bitCount).sum();
+    }
+
+    /**
+     * Return the theoretical false positive probability of the whole filter,
+     * {@code 1 - Π (1 - p_i)} over the current rates {@code p_i} of the layers.
+     * This never exceeds the rate given at construction.
+     */
+    public double theoreticalFalsePositiveRate() {
+        double allNegative = 1.0;
+        for (var layer : layers) {
+            allNegative *= 1 - layer.theoreticalFalsePositiveRate();
+        }
+        return 1 - allNegative;
+    }
+
+    @Override
+    public String toString() {
+        return "ScalableBloomFilter[P=%.4f, s=%d, r=%.2f, layers=%d, m=%,d bits (%,d KB), n=%,d, theoretical FP=%.6f]"
+                .formatted(falsePositiveRate, growthFactor, tighteningRatio, layers.size(),
+                        bitCount(), bitCount() / 8 / 1024, elementCount, theoreticalFalsePositiveRate());
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — overfill a plain filter and a scalable one with the same plan.
+    // -----------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        int plannedCount = 10_000;
+        int probeCount = 1_000_000;
+        var rng = new Random(42);
+
+        var plain = BloomFilter.<Long>withLongHash(plannedCount, 0.01, Long::longValue);
+        var scalable = new ScalableBloomFilter<Long>(plannedCount, 0.01, Long::longValue);
+
+        // Random longs are all distinct for practical purposes, and so are
+        // the probes that follow, so every positive probe is a false positive.
+        System.out.println("Both filters are planned for 10,000 elements at 1% false positives.\n");
+        long inserted = 0;
+        for (int target = plannedCount; target <= 100 * plannedCount; target *= 10) {
+            while (inserted < target) {
+                long key = rng.nextLong();
+                plain.add(key);
+                scalable.add(key);
+                inserted++;
+            }
+            int plainFalse = 0, scalableFalse = 0;
+            for (int i = 0; i < probeCount; i++) {
+                long probe = rng.nextLong();
+                if (plain.probablyContains(probe)) { plainFalse++; }
+                if (scalable.probablyContains(probe)) { scalableFalse++; }
+            }
+            System.out.printf("After %,d elements:%n", inserted);
+            System.out.printf("  plain    observed FP %.6f  %s%n", (double) plainFalse / probeCount, plain);
+            System.out.printf("  scalable observed FP %.6f  %s%n%n", (double) scalableFalse / probeCount, scalable);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The <em>smooth numbers</em> over an arbitrary set of primes, in ascending
+ * order: the positive integers whose prime factors all belong to that set.
+ * The {@link HammingNumbers} are the special case of the primes 2, 3 and 5.
+ * <p>
+ * This generalizes the three-pointer algorithm of {@link HammingNumbers} to one
+ * pointer per prime. Every smooth number after 1 is {@code p * h} for some prime
+ * {@code p} of the set and some smaller smooth number {@code h}, so for each
+ * prime {@code p}, the generator keeps a pointer to the smallest number {@code h}
+ * in the sequence for which the product {@code p * h} has not yet been produced.
+ * The next smooth number is the smallest of these candidate products.
+ * <p>
+ * With many primes, even finding the smallest candidate becomes the bottleneck,
+ * so the candidates are kept in a binary min-heap of prime indices in a plain
+ * {@code int[]} array, ordered by the candidates in a parallel {@code long[]}.
+ * Each new number costs one heap update per prime that produced it, instead of
+ * the object allocations and hash set lookups of a {@code PriorityQueue}
+ * frontier of {@code BigInteger} objects.
+ * <p>
+ * The numbers are primitive {@code long} values, so the sequence ends at the
+ * last smooth number up to {@code Long.MAX_VALUE}. For most prime sets, that
+ * is far more numbers than anybody will ever iterate through.
+ *
+ * @author Ilkka Kokkarinen
+ */
+public class SmoothNumbers implements Iterable<Long> {
+
+    private final long[] primes; // in ascending order
+
+    /**
+     * Create the sequence of smooth numbers over the given primes.
+     *
+     * @param primes the primes, in any order
+     * @throws IllegalArgumentException if no primes are given, or if some
+     *         prime is less than 2 or appears twice
+     */
+    public SmoothNumbers(long... primes) {
+        if (primes.length == 0) {
+            throw new IllegalArgumentException("At least one prime is needed");
+        }
+        this.primes = primes.clone();
+        Arrays.sort(this.primes);
+        for (int i = 0; i < this.primes.length; i++) {
+            if (this.primes[i] < 2 || (i > 0 && this.primes[i] == this.primes[i - 1])) {
+                throw new IllegalArgumentException("Primes must be distinct and at least 2: "
+                        + Arrays.toString(primes));
+            }
+        }
+    }
+
+    /**
+     * Create the sequence of smooth numbers over the first {@code count} primes.
+     *
+     * @param count how many of the smallest primes to use
+     * @return the sequence of smooth numbers over those primes
+     */
+    public static SmoothNumbers overFirstPrimes(int count) {
+        return new SmoothNumbers(LongStream.iterate(2, n -> n + 1)
+                .filter(n -> BigInteger.valueOf(n).isProbablePrime(20))
+                .limit(count)
+                .toArray());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PointerIterator(primes);
+    }
+
+    /**
+     * Return a sequential {@link LongStream} of the smooth numbers in ascending order.
+     *
+     * @return a stream of the smooth numbers
+     */
+    public LongStream stream() {
+        int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT
+                | Spliterator.SORTED | Spliterator.NONNULL;
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(iterator(), characteristics), false);
+    }
+
+    // -----------------------------------------------------------------------
+    // The iterator with one pointer per prime, and a heap of the candidates.
+    // -----------------------------------------------------------------------
+
+    private static class PointerIterator implements PrimitiveIterator.OfLong {
+
+        /**
+         * A candidate product that would overflow. Every real candidate is
+         * positive, so this can never be one, and the heap compares the
+         * candidates as unsigned numbers, where this is larger than all of them.
+         */
+        private static final long EXHAUSTED = -1;
+
+        private final long[] primes;
+        private final int[] pointers;       // pointers[m] indexes the buffer for primes[m]
+        private final long[] candidates;    // candidates[m] == primes[m] * buffer[pointers[m]]
+        private final int[] heap;           // prime indices, as a min-heap by candidate
+
+        // The smooth numbers produced so far, from the laggard pointer onward.
+        private long[] buffer = new long[256];
+        private int size = 1;
+        private boolean first = true;
+
+        PointerIterator(long[] primes) {
+            this.primes = primes;
+            int k = primes.length;
+            pointers = new int[k];
+            candidates = primes.clone(); // each prime times the first number 1
+            heap = new int[k];
+            for (int m = 0; m < k; m++) { heap[m] = m; } // ascending primes already form a heap
+            buffer[0] = 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return first || candidates[heap[0]] != EXHAUSTED;
+        }
+
+        @Override
+        public long nextLong() {
+            if (first) {
+                first = false;
+                return 1;
+            }
+            long next = candidates[heap[0]];
+            if (next == EXHAUSTED) {
+                throw new NoSuchElementException("No more smooth numbers up to Long.MAX_VALUE");
+            }
+            if (size == buffer.length) { compact(); }
+            buffer[size++] = next;
+            // Advance every prime whose candidate was this number, so that the
+            // same number is never produced twice.
+            while (candidates[heap[0]] == next) {
+                int m = heap[0];
+                long h = buffer[++pointers[m]];
+                candidates[m] = (h <= Long.MAX_VALUE / primes[m]) ? primes[m] * h : EXHAUSTED;
+                siftDown();
+            }
+            return next;
+        }
+
+        /** Restore the heap order after the candidate at the root has grown. */
+        private void siftDown() {
+            int m = heap[0];
+            long key = candidates[m];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heap.length) { break; }
+                if (child + 1 < heap.length
+                        && Long.compareUnsigned(candidates[heap[child + 1]], candidates[heap[child]]) < 0) {
+                    child++;
+                }
+                if (Long.compareUnsigned(candidates[heap[child]], key) >= 0) { break; }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = m;
+        }
+
+        /**
+         * Make room in the buffer, by sliding the numbers from the laggard pointer
+         * on to the front if that frees at least half of the buffer, and otherwise
+         * by doubling the buffer.
+         */
+        private void compact() {
+            int low = Arrays.stream(pointers).min().orElseThrow();
+            if (low >= buffer.length / 2) {
+                System.arraycopy(buffer, low, buffer, 0, size - low);
+                size -= low;
+                for (int m = 0; m < pointers.length; m++) { pointers[m] -= low; }
+            } else {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — verify against the Hamming numbers and a priority queue frontier.
+    // -----------------------------------------------------------------------
+
+    /**
+     * The straightforward way to generate the same sequence, with a priority
+     * queue frontier and a hash set to detect duplicates, for comparison.
+     */
+    private static BigInteger frontierNth(long[] primes, int count) {
+        var queue = new PriorityQueue<BigInteger>();
+        var seen = new HashSet<BigInteger>();
+        queue.add(BigInteger.ONE);
+        BigInteger current = BigInteger.ONE;
+        for (int i = 0; i < count; i++) {
+            current = queue.poll();
+            seen.remove(current);
+            for (long p : primes) {
+                BigInteger candidate = current.multiply(BigInteger.valueOf(p));
+                if (seen.add(candidate)) { queue.add(candidate); }
+            }
+        }
+        return current;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Smooth numbers over 2, 3, 5 are the Hamming numbers:");
+        var hamming = new SmoothNumbers(5, 3, 2);
+        hamming.stream().limit(20).forEach(h -> System.out.print(h + " "));
+        System.out.println();
+        boolean agrees = hamming.stream().limit(10_000).boxed()
+                .map(BigInteger::valueOf)
+                .toList()
+                .equals(new HammingNumbers().stream().limit(10_000).toList());
+        System.out.println("Agrees with HammingNumbers for the first 10,000: " + agrees);
+
+        System.out.println("\nThe 7-smooth (humble) numbers below 100:");
+        new SmoothNumbers(2, 3, 5, 7).stream().takeWhile(h -> h < 100)
+                .forEach(h -> System.out.print(h + " "));
+        System.out.println("\n");
+
+        // Sequences over few primes run out of longs quickly, so count them all.
+        int count = 10_000_000;
+        for (int primeCount : new int[] {3, 10, 25}) {
+            var smooth = SmoothNumbers.overFirstPrimes(primeCount);
+            long startTime = System.nanoTime();
+            var stats = smooth.stream().limit(count).summaryStatistics();
+            double pointerTime = (System.nanoTime() - startTime) / 1e6;
+
+            int frontierCount = (int) Math.min(stats.getCount(), count / 100);
+            startTime = System.nanoTime();
+            BigInteger frontierLast = frontierNth(smooth.primes, frontierCount);
+            double frontierTime = (System.nanoTime() - startTime) / 1e6;
+            boolean same = frontierLast.longValueExact()
+                    == smooth.stream().skip(frontierCount - 1).findFirst().orElseThrow();
+
+            System.out.printf("First %d primes: %,d numbers in %,.0f ms (%.1f ns each), the last one %,d%n",
+                    primeCount, stats.getCount(), pointerTime, pointerTime * 1e6 / stats.getCount(), stats.getMax());
+            System.out.printf("  priority queue frontier: %,d numbers in %,.0f ms (%.1f ns each), same result: %s%n",
+                    frontierCount, frontierTime, frontierTime * 1e6 / frontierCount, same);
+        }
+    }
+}
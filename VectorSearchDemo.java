@@ -0,0 +1,139 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The searches of {@link ArraySearchDemo} done with SIMD instructions through
+ * the Vector API, which compares a whole vector of elements to the target at
+ * once: eight {@code int} values in a 256-bit AVX2 register, or sixteen with
+ * AVX-512.
+ * <ul>
+ *   <li><b>Vector search</b> — linear search that compares a vector of
+ *       elements per step, and finds the first match inside the vector from
+ *       the mask of the comparison results.</li>
+ *   <li><b>Vector lower bound</b> — the insertion point of the target in a
+ *       small sorted array. The elements less than the target are a prefix
+ *       of the array, so their count is the answer, and counting them with
+ *       vector comparisons needs no unpredictable branches at all.</li>
+ * </ul>
+ * The Vector API is still an incubator module in Java 21, so this class is
+ * kept apart from {@code ArraySearchDemo}, which then compiles and runs without
+ * it. Compile and run this one with the module added:
+ * <pre>
+ *   javac --add-modules jdk.incubator.vector ArraySearchDemo.java VectorSearchDemo.java
+ *   java --add-modules jdk.incubator.vector VectorSearchDemo
+ * </pre>
+ *
+ * @author Ilkka Kokkarinen
+ */
+public class VectorSearchDemo {
+
+    /** The widest vector shape that this CPU supports well. */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // -----------------------------------------------------------------------
+    // Vector search — compare a whole vector of elements per step.
+    //
+    // The comparison of a vector against the target gives a mask with one bit
+    // per lane, and the index of its lowest set bit is the position of the
+    // first match inside the vector. The elements past the last full vector
+    // are checked one at a time.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Search for {@code target} in {@code array} by scanning left to right,
+     * a whole vector of elements at a time.
+     *
+     * @param array  the array to search
+     * @param target the value to find
+     * @return the index of the first occurrence, or -1 if not found
+     */
+    public static int vectorSearch(int[] array, int target) {
+        int i = 0;
+        int bound = SPECIES.loopBound(array.length);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Integer> matches = IntVector.fromArray(SPECIES, array, i).eq(target);
+            if (matches.anyTrue()) { return i + matches.firstTrue(); }
+        }
+        for (; i < array.length; i++) {
+            if (array[i] == target) { return i; }
+        }
+        return -1;
+    }
+
+    // -----------------------------------------------------------------------
+    // Vector lower bound — count the elements less than the target.
+    //
+    // In a sorted array, the lanes of a vector that are less than the target
+    // always come first, so the scan can stop at the first vector where not
+    // all of them are, and add the count of those that are. This reads every
+    // element up to the answer, so it only pays for small arrays, where
+    // binary search spends most of its time mispredicting branches.
+    // -----------------------------------------------------------------------
+
+    /**
+     * Search for {@code target} in a small sorted array, returning the same
+     * index or insertion point as {@link ArraySearchDemo#binarySearch(int[], int)}.
+     *
+     * @param sorted the array to search (must be sorted in ascending order)
+     * @param target the value to find
+     * @return the index of the target or its insertion point
+     */
+    public static int vectorLowerBound(int[] sorted, int target) {
+        int i = 0;
+        int bound = SPECIES.loopBound(sorted.length);
+        for (; i < bound; i += SPECIES.length()) {
+            int less = IntVector.fromArray(SPECIES, sorted, i).lt(target).trueCount();
+            if (less < SPECIES.length()) { return i + less; }
+        }
+        while (i < sorted.length && sorted[i] < target) { i++; }
+        return i;
+    }
+
+    // -----------------------------------------------------------------------
+    // Main — verify against the scalar searches and benchmark them all.
+    // -----------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        var rng = new Random(42);
+        System.out.printf("Vector species: %s, %d ints per vector%n", SPECIES, SPECIES.length());
+
+        // --- The same unsorted benchmark as in ArraySearchDemo ---
+        System.out.println("\n=== Benchmark (unsorted, n=100,000) ===\n");
+        int size = 100_000;
+        int[] largeArray = rng.ints(size, 0, size * 10).toArray();
+        int[] targets = rng.ints(10_000, 0, size * 10).toArray();
+
+        ArraySearchDemo.benchmarkSearch("linearSearch",   ArraySearchDemo::linearSearch,   largeArray, targets);
+        ArraySearchDemo.benchmarkSearch("sentinelSearch", ArraySearchDemo::sentinelSearch, largeArray, targets);
+        ArraySearchDemo.benchmarkSearch("unrolledSearch", ArraySearchDemo::unrolledSearch, largeArray, targets);
+        ArraySearchDemo.benchmarkSearch("vectorSearch",   VectorSearchDemo::vectorSearch,  largeArray, targets);
+        boolean agree = IntStream.of(targets)
+                .allMatch(t -> vectorSearch(largeArray, t) == ArraySearchDemo.linearSearch(largeArray, t));
+        System.out.println("  vectorSearch agrees with linearSearch: " + agree);
+
+        // --- Small sorted arrays, where a linear scan can beat binary search ---
+        for (int n : new int[] {16, 64, 256, 1024, 4096}) {
+            int[] sorted = rng.ints(n, 0, 10 * n).sorted().toArray();
+            int[] sortedTargets = rng.ints(1_000_000, -1, 10 * n + 1).toArray();
+            System.out.printf("%n=== Benchmark (sorted, n=%,d) ===%n%n", n);
+            ArraySearchDemo.benchmarkSearch("binarySearch",     ArraySearchDemo::binarySearch,       sorted, sortedTargets);
+            ArraySearchDemo.benchmarkSearch("vectorLowerBound", VectorSearchDemo::vectorLowerBound, sorted, sortedTargets);
+            agree = IntStream.of(sortedTargets)
+                    .allMatch(t -> vectorLowerBound(sorted, t) == ArraySearchDemo.binarySearch(sorted, t));
+            System.out.println("  vectorLowerBound agrees with binarySearch: " + agree);
+        }
+
+        // --- Small example for visual verification ---
+        int[] sortedArray = {2, 5, 8, 12, 16, 23, 38, 56, 72, 91};
+        System.out.println("\nSorted array: " + Arrays.toString(sortedArray));
+        for (int target : new int[] {23, 1, 50, 100}) {
+            System.out.printf("  vectorSearch(%d): %d, vectorLowerBound(%d): %d%n", target,
+                    vectorSearch(sortedArray, target), target, vectorLowerBound(sortedArray, target));
+        }
+    }
+}